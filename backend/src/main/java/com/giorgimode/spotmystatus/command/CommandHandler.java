@@ -1,65 +1,89 @@
 package com.giorgimode.spotmystatus.command;
 
 import static com.giorgimode.spotmystatus.helpers.SpotUtil.baseUri;
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static com.giorgimode.spotmystatus.helpers.SpotUtil.detachFromRequest;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import com.giorgimode.spotmystatus.service.UserInteractionService;
 import com.giorgimode.spotmystatus.slack.SlackClient;
 import com.google.common.collect.ImmutableMap;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Function;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import javax.xml.bind.DatatypeConverter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
 public class CommandHandler {
 
-    private static final String SHA_256_ALGORITHM = "HmacSHA256";
-
     private final UserInteractionService userInteractionService;
+    private final SlackClient slackClient;
+    private final ExecutorService commandExecutor;
     private final Map<String, Function<String, String>> COMMAND_MAP;
-    private final String slackSigningSecret;
-    private final boolean shouldVerifySignature;
 
     public CommandHandler(SlackClient slackClient,
         UserInteractionService userInteractionService,
-        @Value("${secret.slack.signing_secret}") String slackSigningSecret,
-        @Value("${signature_verification_enabled}") boolean shouldVerifySignature) {
+        @Qualifier("commandExecutor") ExecutorService commandExecutor) {
 
         this.userInteractionService = userInteractionService;
-        this.slackSigningSecret = slackSigningSecret;
-        this.shouldVerifySignature = shouldVerifySignature;
+        this.slackClient = slackClient;
+        this.commandExecutor = commandExecutor;
         COMMAND_MAP = new ImmutableMap.Builder<String, Function<String, String>>()
-            .put("pause", new PauseCommand(slackClient))
-            .put("play", new PlayCommand(slackClient))
+            .put("pause", new PauseCommand(slackClient, userInteractionService))
+            .put("play", new PlayCommand(slackClient, userInteractionService))
             .put("purge", new PurgeCommand(slackClient, userInteractionService))
             .put("links", new TrackUrlPrinterCommand(userInteractionService))
             .build();
     }
 
     public String handleCommand(CommandMetaData commandMetaData) {
-        boolean isValidSignature = isValidSignature(commandMetaData.getTimestamp(), commandMetaData.getSignature(), commandMetaData.getBody());
-        if (!isValidSignature) {
-            log.error("Provided signature is not valid");
-            return "Failed to validate signature. If the issue persists, please contact support at " + baseUri() + "/support";
-        }
         if (userInteractionService.isUserMissing(commandMetaData.getUserId())) {
             return generateMissingUserResponse();
         }
 
         if (isBlank(commandMetaData.getCommand())) {
             log.debug("Generating modal view for user {}", commandMetaData.getUserId());
-            userInteractionService.handleTrigger(commandMetaData.getUserId(), commandMetaData.getTriggerId());
+            return handleAsync(commandMetaData,
+                () -> userInteractionService.handleTrigger(commandMetaData.getUserId(), commandMetaData.getTriggerId()));
+        }
+
+        Function<String, String> command = COMMAND_MAP.get(commandMetaData.getCommand());
+        if (command == null) {
+            return generateDefaultResponse();
+        }
+        return handleAsync(commandMetaData, () -> respond(commandMetaData, command.apply(commandMetaData.getUserId())));
+    }
+
+    /**
+     * Slack expects a command to be acknowledged within 3 seconds, so the actual work is done in the background and its result is
+     * delivered through the response_url of the command
+     */
+    private String handleAsync(CommandMetaData commandMetaData, Runnable task) {
+        try {
+            commandExecutor.execute(detachFromRequest(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.error("Failed to handle command {} of user {}", commandMetaData.getCommand(), commandMetaData.getUserId(), e);
+                    respond(commandMetaData, "Failed to process the command. If the issue persists, please contact support at "
+                        + baseUri() + "/support");
+                }
+            }));
             return null;
+        } catch (RejectedExecutionException e) {
+            log.error("Rejected command {} of user {}", commandMetaData.getCommand(), commandMetaData.getUserId());
+            return "Too many requests at the moment. Please try again in a few seconds";
         }
+    }
 
-        return COMMAND_MAP.getOrDefault(commandMetaData.getCommand(), (id) -> generateDefaultResponse()).apply(commandMetaData.getUserId());
+    private void respond(CommandMetaData commandMetaData, String response) {
+        if (isBlank(commandMetaData.getResponseUrl()) || response == null) {
+            log.debug("Dropping response of command {} for user {}", commandMetaData.getCommand(), commandMetaData.getUserId());
+            return;
+        }
+        slackClient.respond(commandMetaData.getResponseUrl(), response);
     }
 
     private String generateDefaultResponse() {
@@ -75,28 +99,6 @@ public class CommandHandler {
             + "\nIf the issue persists, please contact support at " + baseUri() + "/support";
     }
 
-    public boolean isValidSignature(Long timestamp, String signature, String bodyString) {
-        if (!shouldVerifySignature) {
-            return true;
-        }
-
-        return calculateSha256("v0:" + timestamp + ":" + bodyString)
-            .map(hashedString -> ("v0=" + hashedString).equalsIgnoreCase(signature))
-            .orElse(false);
-    }
-
-    private Optional<String> calculateSha256(String message) {
-        try {
-            Mac mac = Mac.getInstance(SHA_256_ALGORITHM);
-            mac.init(new SecretKeySpec(slackSigningSecret.getBytes(UTF_8), SHA_256_ALGORITHM));
-            byte[] hashedMessage = mac.doFinal(message.getBytes(UTF_8));
-            return Optional.of(DatatypeConverter.printHexBinary(hashedMessage));
-        } catch (Exception e) {
-            log.error("Failed to calculate hmac-sha256", e);
-            return Optional.empty();
-        }
-    }
-
     private String signupMessage() {
         return String.format("To sign up again visit the <%s|app home page>", baseUri());
     }
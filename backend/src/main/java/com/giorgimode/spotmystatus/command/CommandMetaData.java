@@ -7,10 +7,8 @@ import lombok.Getter;
 @Builder
 public class CommandMetaData {
 
-    private Long timestamp;
-    private String signature;
     private String userId;
     private String command;
     private String triggerId;
-    private String body;
+    private String responseUrl;
 }
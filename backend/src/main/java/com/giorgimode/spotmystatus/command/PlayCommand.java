@@ -1,5 +1,6 @@
 package com.giorgimode.spotmystatus.command;
 
+import com.giorgimode.spotmystatus.service.UserInteractionService;
 import com.giorgimode.spotmystatus.slack.SlackClient;
 import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
@@ -8,14 +9,17 @@ import lombok.extern.slf4j.Slf4j;
 public class PlayCommand implements Function<String, String> {
 
     private final SlackClient slackClient;
+    private final UserInteractionService userInteractionService;
 
-    public PlayCommand(SlackClient slackClient) {
+    public PlayCommand(SlackClient slackClient, UserInteractionService userInteractionService) {
         this.slackClient = slackClient;
+        this.userInteractionService = userInteractionService;
     }
 
     @Override
     public String apply(String userId) {
         log.debug("Resuming updates for user {}", userId);
+        userInteractionService.invalidateHomeTab(userId);
         return slackClient.resume(userId);
     }
 }
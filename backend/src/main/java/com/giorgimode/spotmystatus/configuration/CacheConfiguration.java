@@ -4,12 +4,15 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import com.giorgimode.spotmystatus.helpers.SpotUtil;
 import com.giorgimode.spotmystatus.model.CachedUser;
 import com.giorgimode.spotmystatus.model.SpotifyTokenResponse;
-import com.giorgimode.spotmystatus.persistence.User;
+import com.giorgimode.spotmystatus.persistence.TeamIndex;
+import com.giorgimode.spotmystatus.persistence.UserData;
 import com.giorgimode.spotmystatus.persistence.UserRepository;
+import com.giorgimode.spotmystatus.persistence.UserStateSnapshot;
 import com.giorgimode.spotmystatus.spotify.SpotifyAuthClient;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -20,26 +23,51 @@ import org.springframework.web.client.HttpClientErrorException;
 @Slf4j
 public class CacheConfiguration {
 
+    private static final int USER_PAGE_SIZE = 500;
+
     @Bean
-    public LoadingCache<String, CachedUser> userCache(SpotifyAuthClient spotifyAuthClient, UserRepository userRepository) {
+    public LoadingCache<String, CachedUser> userCache(SpotifyAuthClient spotifyAuthClient, UserRepository userRepository,
+        UserStateSnapshot userStateSnapshot, TeamIndex teamIndex) {
+
         LoadingCache<String, CachedUser> cache = Caffeine.newBuilder()
                                                          .maximumSize(10_000)
-                                                         .build(key -> loadUser(key, spotifyAuthClient, userRepository));
-        populateCache(cache, spotifyAuthClient, userRepository);
+                                                         .build(key -> loadUser(key, spotifyAuthClient, userRepository, teamIndex));
+        populateCache(cache, spotifyAuthClient, userRepository, userStateSnapshot.read(), teamIndex);
         return cache;
     }
 
 
-    private void populateCache(LoadingCache<String, CachedUser> cache, SpotifyAuthClient spotifyAuthClient, UserRepository userRepository) {
-        userRepository.findAll()
-                      .stream()
-                      .filter(user -> isNotBlank(user.getSpotifyRefreshToken()))
-                      .map(user -> cacheUser(spotifyAuthClient, user, userRepository))
-                      .filter(Objects::nonNull)
-                      .forEach(cachedUser -> cache.put(cachedUser.getId(), cachedUser));
+    private void populateCache(LoadingCache<String, CachedUser> cache, SpotifyAuthClient spotifyAuthClient, UserRepository userRepository,
+        Map<String, UserStateSnapshot.Entry> snapshot, TeamIndex teamIndex) {
+
+        userRepository.forEachAuthorizedUser(USER_PAGE_SIZE, user -> {
+            if (isNotBlank(user.getSpotifyRefreshToken())) {
+                restoreUser(user, snapshot.get(user.getId()))
+                    .or(() -> Optional.ofNullable(cacheUser(spotifyAuthClient, user, userRepository, teamIndex)))
+                    .ifPresent(cachedUser -> {
+                        cache.put(cachedUser.getId(), cachedUser);
+                        teamIndex.add(cachedUser.getTeamId(), cachedUser.getId());
+                    });
+            }
+        });
+    }
+
+    private Optional<CachedUser> restoreUser(UserData user, UserStateSnapshot.Entry snapshotEntry) {
+        if (snapshotEntry == null || snapshotEntry.getSpotifyAccessToken() == null || !snapshotEntry.matches(user)) {
+            return Optional.empty();
+        }
+        try {
+            CachedUser cachedUser = SpotUtil.toCachedUser(user, snapshotEntry.getSpotifyAccessToken());
+            snapshotEntry.applyTo(cachedUser);
+            log.debug("Restored user {} from state snapshot", user.getId());
+            return Optional.of(cachedUser);
+        } catch (Exception e) {
+            log.warn("Failed to restore user {} from state snapshot", user.getId(), e);
+            return Optional.empty();
+        }
     }
 
-    private String getAccessToken(SpotifyAuthClient spotifyAuthClient, User user) {
+    private String getAccessToken(SpotifyAuthClient spotifyAuthClient, UserData user) {
         SpotifyTokenResponse newAccessToken = spotifyAuthClient.getNewAccessToken(user.getSpotifyRefreshToken());
         log.info("Retrieved spotify access token expiring in {} seconds", newAccessToken.getExpiresIn());
         return newAccessToken.getAccessToken();
@@ -47,21 +75,28 @@ public class CacheConfiguration {
 
     private CachedUser loadUser(String userId,
         SpotifyAuthClient spotifyAuthClient,
-        UserRepository userRepository) {
+        UserRepository userRepository,
+        TeamIndex teamIndex) {
 
         return userRepository.findById(userId)
                              .filter(user -> isNotBlank(user.getSpotifyRefreshToken()))
-                             .map(user -> cacheUser(spotifyAuthClient, user, userRepository))
+                             .map(user -> cacheUser(spotifyAuthClient, user, userRepository, teamIndex))
+                             .map(cachedUser -> {
+                                 // only users which made it into the cache are listed as teammates
+                                 teamIndex.add(cachedUser.getTeamId(), cachedUser.getId());
+                                 return cachedUser;
+                             })
                              .orElse(null);
     }
 
-    private CachedUser cacheUser(SpotifyAuthClient spotifyAuthClient, User user, UserRepository userRepository) {
+    private CachedUser cacheUser(SpotifyAuthClient spotifyAuthClient, UserData user, UserRepository userRepository, TeamIndex teamIndex) {
         try {
             return SpotUtil.toCachedUser(user, getAccessToken(spotifyAuthClient, user));
         } catch (HttpClientErrorException ex) {
             if (ex.getStatusCode() == HttpStatus.BAD_REQUEST && ex.getResponseBodyAsString().contains("invalid_grant")) {
                 log.error("User's spotify token has been invalidated. Removing the user");
                 userRepository.deleteById(user.getId());
+                teamIndex.remove(user.getId());
             } else {
                 log.error("Failed to cache user with id {}", user.getId(), ex);
             }
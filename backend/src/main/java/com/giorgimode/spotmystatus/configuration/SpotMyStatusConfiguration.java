@@ -1,6 +1,8 @@
 package com.giorgimode.spotmystatus.configuration;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -30,4 +32,25 @@ public class SpotMyStatusConfiguration {
     public ThreadPoolExecutor cachedThreadPool(@Value("${spotmystatus.core_pool_size}") Integer corePoolSize) {
         return new ThreadPoolExecutor(corePoolSize, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
     }
+
+    @Bean
+    public ThreadPoolExecutor commandExecutor(@Value("${spotmystatus.command_pool_size}") Integer poolSize,
+        @Value("${spotmystatus.command_queue_size}") Integer queueSize) {
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+            new ThreadFactoryBuilder().setNameFormat("slack-command-%d").build());
+    }
+
+    @Bean
+    public ThreadPoolExecutor eventExecutor(@Value("${spotmystatus.event_pool_size}") Integer poolSize,
+        @Value("${spotmystatus.event_queue_size}") Integer queueSize) {
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+            new ThreadFactoryBuilder().setNameFormat("slack-event-%d").build());
+    }
+
+    @Bean
+    public ThreadPoolExecutor statusWriteExecutor(@Value("${spotmystatus.status_write_pool_size}") Integer poolSize,
+        @Value("${spotmystatus.status_write_queue_size}") Integer queueSize) {
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+            new ThreadFactoryBuilder().setNameFormat("slack-status-%d").build());
+    }
 }
@@ -0,0 +1,255 @@
+package com.giorgimode.spotmystatus.controller;
+
+import static com.giorgimode.spotmystatus.helpers.SpotUtil.OBJECT_MAPPER;
+import static com.giorgimode.spotmystatus.helpers.SpotUtil.baseUri;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import com.giorgimode.spotmystatus.model.SlackEvent;
+import com.giorgimode.spotmystatus.model.modals.InvocationModal;
+import com.google.common.io.BaseEncoding;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Reads the body of every Slack request exactly once, verifies its signature and stores the parsed payload as a request attribute, so
+ * that controllers do not have to parse it again.
+ * <p>
+ * See https://api.slack.com/authentication/verifying-requests-from-slack
+ */
+@Component
+@Slf4j
+public class SlackRequestFilter extends OncePerRequestFilter {
+
+    public static final String PAYLOAD_ATTRIBUTE = "slackPayload";
+
+    private static final String COMMAND_PATH = "/api/slack/command";
+    private static final String EVENTS_PATH = "/api/slack/events";
+    private static final String INTERACTION_PATH = "/api/slack/interaction";
+    // only requests sent by Slack itself are signed, the OAuth redirect is opened by the user's browser
+    private static final Set<String> SIGNED_PATHS = Set.of(COMMAND_PATH, EVENTS_PATH, INTERACTION_PATH);
+    private static final String SHA_256_ALGORITHM = "HmacSHA256";
+    private static final long MAX_REQUEST_AGE_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+
+    private final ThreadLocal<Mac> macHolder;
+    private final boolean signatureVerificationEnabled;
+
+    public SlackRequestFilter(@Value("${secret.slack.signing_secret}") String slackSigningSecret,
+        @Value("${signature_verification_enabled}") boolean signatureVerificationEnabled) {
+
+        SecretKeySpec signingKey = new SecretKeySpec(slackSigningSecret.getBytes(UTF_8), SHA_256_ALGORITHM);
+        this.macHolder = ThreadLocal.withInitial(() -> createMac(signingKey));
+        this.signatureVerificationEnabled = signatureVerificationEnabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !SIGNED_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        if (signatureVerificationEnabled && !isValidSignature(request, body)) {
+            log.error("Provided signature of request to {} is not valid", path);
+            rejectRequest(path, response);
+            return;
+        }
+
+        CachedBodyRequest cachedBodyRequest = new CachedBodyRequest(request, body);
+        try {
+            if (EVENTS_PATH.equals(path)) {
+                request.setAttribute(PAYLOAD_ATTRIBUTE, OBJECT_MAPPER.readValue(body, SlackEvent.class));
+            } else if (INTERACTION_PATH.equals(path)) {
+                String payload = cachedBodyRequest.getParameter("payload");
+                if (!isBlank(payload)) {
+                    request.setAttribute(PAYLOAD_ATTRIBUTE, OBJECT_MAPPER.readValue(payload, InvocationModal.class));
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to parse request to {}", path, e);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        filterChain.doFilter(cachedBodyRequest, response);
+    }
+
+    private boolean isValidSignature(HttpServletRequest request, byte[] body) {
+        String timestamp = request.getHeader("X-Slack-Request-Timestamp");
+        String signature = request.getHeader("X-Slack-Signature");
+        if (isBlank(timestamp) || isBlank(signature)) {
+            return false;
+        }
+        try {
+            // requests older than a few minutes could be replayed
+            if (Math.abs(System.currentTimeMillis() / 1000 - Long.parseLong(timestamp)) > MAX_REQUEST_AGE_SECONDS) {
+                return false;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        Mac mac = macHolder.get();
+        mac.update(("v0:" + timestamp + ":").getBytes(UTF_8));
+        byte[] hashedMessage = mac.doFinal(body);
+        String expectedSignature = "v0=" + BaseEncoding.base16().lowerCase().encode(hashedMessage);
+        return MessageDigest.isEqual(expectedSignature.getBytes(UTF_8), signature.toLowerCase().getBytes(UTF_8));
+    }
+
+    private void rejectRequest(String path, HttpServletResponse response) throws IOException {
+        if (COMMAND_PATH.equals(path)) {
+            // Slack shows command responses to the user, so the failure is returned as a regular answer
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.setCharacterEncoding(UTF_8.name());
+            response.getWriter().write("Failed to validate signature. If the issue persists, please contact support at "
+                + baseUri() + "/support");
+        } else {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+        }
+    }
+
+    private static Mac createMac(SecretKeySpec signingKey) {
+        try {
+            Mac mac = Mac.getInstance(SHA_256_ALGORITHM);
+            mac.init(signingKey);
+            return mac;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to initialize hmac-sha256", e);
+        }
+    }
+
+    /**
+     * Replays the already consumed body and resolves form parameters from it, as the servlet container can no longer read them
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+        private final Map<String, String[]> parameters;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+            Map<String, List<String>> parsedParameters = new LinkedHashMap<>();
+            parseParameters(request.getQueryString(), parsedParameters);
+            if (request.getContentType() != null
+                && MediaType.APPLICATION_FORM_URLENCODED.includes(MediaType.parseMediaType(request.getContentType()))) {
+                parseParameters(new String(body, UTF_8), parsedParameters);
+            }
+            Map<String, String[]> parameterArrays = new LinkedHashMap<>();
+            parsedParameters.forEach((name, values) -> parameterArrays.put(name, values.toArray(new String[0])));
+            this.parameters = Collections.unmodifiableMap(parameterArrays);
+        }
+
+        private static void parseParameters(String query, Map<String, List<String>> parameters) {
+            if (isBlank(query)) {
+                return;
+            }
+            for (String pair : query.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int separator = pair.indexOf('=');
+                String name = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), UTF_8);
+                String value = separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), UTF_8);
+                parameters.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+            }
+        }
+
+        @Override
+        public String getParameter(String name) {
+            String[] values = parameters.get(name);
+            return values == null ? null : values[0];
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            return parameters;
+        }
+
+        @Override
+        public Enumeration<String> getParameterNames() {
+            return Collections.enumeration(parameters.keySet());
+        }
+
+        @Override
+        public String[] getParameterValues(String name) {
+            return parameters.get(name);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return inputStream.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // the body is fully buffered, so everything is available right away
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return inputStream.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return inputStream.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), UTF_8));
+        }
+    }
+}
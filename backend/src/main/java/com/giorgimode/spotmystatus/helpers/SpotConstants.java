@@ -28,12 +28,16 @@ public final class SpotConstants {
     public static final String ALL_DEVICES_OFFLINE_VALUE = "all_devices_offline";
     public static final String ALL_DEVICES_ALLOWED_VALUE = "all_devices_allowed";
     public static final String ALL_DEVICES_ALLOWED_TEXT = "Any Device";
+    public static final int SLACK_STATUS_MAX_LENGTH = 100;
+    public static final int TRACK_LINK_MAX_LENGTH = 150;
     public static final String EMOJI_REGEX = "^[a-z0-9-_]+$";
     public static final String SLACK_REDIRECT_PATH = "/slack/redirect";
     public static final String SPOTIFY_REDIRECT_PATH = "/spotify/redirect";
     public static final String SPOTIFY_SCOPE_USER_PLAYBACK = "user-read-playback-state";
     public static final List<String> SLACK_PROFILE_SCOPES = List.of("users:read", "users.profile:read", "users.profile:write");
-    public static final List<String> SLACK_BOT_SCOPES = List.of("chat:write", "commands");
+    // emoji:read only lists the custom emoji names of the team, see EmojiCatalog. Workspaces installed before keep their token, for them
+    // the emoji list cannot be fetched and all emojis count as available
+    public static final List<String> SLACK_BOT_SCOPES = List.of("chat:write", "commands", "emoji:read");
     public static final String MODAL_FOOTER_MESSAGE = ":house: <%1$s|_*SpotMyStatus Home*_> | :male-mechanic: <%1$s/support|_*SpotMyStatus Support*_>";
     public static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("hh:mm a");
 }
@@ -21,10 +21,26 @@ public class SpotMyStatusProperties {
     private Integer minSleepOnApiRateExceeded;
     private Integer syncStartHr;
     private Integer syncEndHr;
+    private Boolean workingHoursEnabled;
     private Integer timeout;
     private Integer expirationOverhead;
+    private Boolean expirationOnlyEnabled;
+    private Integer expirationOnlyOverhead;
     private Boolean shutdownCleanupEnabled;
     private List<String> defaultEmojis;
     private String podcastEmoji;
     private Map<String, String> defaultSpotifyItems;
+    private String snapshotPath;
+    private Long trackBoardTtl;
+    private Long teamViewTtl;
+    private Long teamViewWaitTimeout;
+    private Long eventDedupeTtl;
+    private Long homeTabTtl;
+    private Long homeTabDebounce;
+    private Long deviceInventoryTtl;
+    private Long playerStateTtl;
+    private Long emojiCatalogTtl;
+    private Long trackMetadataCacheSize;
+    private Long statusWriteMinInterval;
+    private Boolean nextTrackPrerenderEnabled;
 }
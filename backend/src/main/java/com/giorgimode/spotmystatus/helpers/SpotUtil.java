@@ -3,20 +3,23 @@ package com.giorgimode.spotmystatus.helpers;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.giorgimode.spotmystatus.model.CachedUser;
-import com.giorgimode.spotmystatus.persistence.User;
+import com.giorgimode.spotmystatus.persistence.UserData;
 import java.util.Map;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 
 @Slf4j
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public final class SpotUtil {
 
     public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ThreadLocal<String> DETACHED_CONTEXT_PATH = new ThreadLocal<>();
 
-    public static CachedUser toCachedUser(User user, String spotifyAccessToken) {
+    public static CachedUser toCachedUser(UserData user, String spotifyAccessToken) {
         return CachedUser.builder()
                          .id(user.getId())
                          .teamId(user.getTeamId())
@@ -46,7 +49,29 @@ public final class SpotUtil {
     }
 
     public static String baseUri(String scheme) {
-        return ServletUriComponentsBuilder.fromCurrentContextPath().scheme(scheme).build().toUriString();
+        String detachedContextPath = DETACHED_CONTEXT_PATH.get();
+        UriComponentsBuilder uriBuilder = detachedContextPath == null
+            ? ServletUriComponentsBuilder.fromCurrentContextPath()
+            : UriComponentsBuilder.fromHttpUrl(detachedContextPath);
+        return uriBuilder.scheme(scheme).build().toUriString();
+    }
+
+    /**
+     * Wraps a task which runs after the current request has completed, so that base URIs are still resolved against the request
+     */
+    public static Runnable detachFromRequest(Runnable task) {
+        if (RequestContextHolder.getRequestAttributes() == null) {
+            return task;
+        }
+        String contextPath = ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString();
+        return () -> {
+            DETACHED_CONTEXT_PATH.set(contextPath);
+            try {
+                task.run();
+            } finally {
+                DETACHED_CONTEXT_PATH.remove();
+            }
+        };
     }
 
     @SuppressWarnings({"unchecked", "rawtypes"})
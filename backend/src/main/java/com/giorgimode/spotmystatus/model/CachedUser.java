@@ -10,6 +10,7 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -30,17 +31,33 @@ public class CachedUser implements Serializable {
     private boolean manualStatus;
     private String slackAccessToken;
     private String slackBotToken;
+    @Setter(AccessLevel.NONE)
     private String spotifyAccessToken;
+    // epoch millis, the access token is issued for a limited time only
+    private long spotifyAccessTokenIssuedAt;
     private String spotifyRefreshToken;
     private boolean disabled;
     private boolean cleaned = true;
     private LocalDateTime updatedAt;
     private List<String> emojis;
+    @Setter(AccessLevel.NONE)
+    private EmojiRotation emojiRotation = EmojiRotation.EMPTY;
     private String currentEmoji;
     private List<SpotifyItem> spotifyItems;
     private List<String> spotifyDeviceIds;
     private Integer syncStartHour;
     private Integer syncEndHour;
+    // item which the full player state has last been checked for, see SpotifyClient#getPlayerStateKey
+    private String playerStateKey;
+    // whether the item of the last player state check has been playing in a private session
+    private boolean privateSession;
+    // epoch millis of the last player state check
+    private long playerStateCheckedAt;
+    // track shown in the current slack status, as long as the status has not been changed or cleaned since
+    private String statusTrackId;
+    // held by the user's polls and status writes, see #runExclusively
+    @Getter(AccessLevel.NONE)
+    private final ReentrantLock statusLock = new ReentrantLock();
 
     @Override
     public String toString() {
@@ -191,6 +208,38 @@ public class CachedUser implements Serializable {
         }
     }
 
+    public void setSpotifyAccessToken(String spotifyAccessToken) {
+        this.spotifyAccessToken = spotifyAccessToken;
+        this.spotifyAccessTokenIssuedAt = System.currentTimeMillis();
+    }
+
+    public void setEmojis(List<String> emojis) {
+        this.emojis = emojis;
+        this.emojiRotation = EmojiRotation.of(emojis);
+    }
+
+    /**
+     * Runs the action while no other poll or status write of the user is in progress. A poll thus never compares a Slack status fetched
+     * before a write with the status cached after it, which would be taken for a manual status change. Reentrant, as a write may run on
+     * the thread of the poll submitting it
+     */
+    public void runExclusively(Runnable action) {
+        statusLock.lock();
+        try {
+            action.run();
+        } finally {
+            statusLock.unlock();
+        }
+    }
+
+    /**
+     * Compares the track identity only, so that an unchanged track does not cost building the title or picking an emoji. Local files
+     * have no id and are never considered as shown
+     */
+    public boolean isShowingTrack(SpotifyCurrentItem currentItem) {
+        return statusTrackId != null && statusTrackId.equals(currentItem.getTrackId()) && Boolean.TRUE.equals(currentItem.getIsPlaying());
+    }
+
     public boolean isItemEnabled(SpotifyCurrentItem currentItem) {
         boolean isItemEnabled = getSpotifyItems().isEmpty() || getSpotifyItems().contains(SpotifyItem.from(currentItem.getType()));
         if (!isItemEnabled) {
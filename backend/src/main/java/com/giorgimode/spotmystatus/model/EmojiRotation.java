@@ -0,0 +1,53 @@
+package com.giorgimode.spotmystatus.model;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Emojis of a status in the form they are picked from: names as well as the colon-wrapped values written to Slack. A rotation is built
+ * once the emojis change, users with the same emojis share the same instance.
+ */
+public final class EmojiRotation implements Serializable {
+
+    public static final EmojiRotation EMPTY = new EmojiRotation(List.of());
+
+    private static final Cache<List<String>, EmojiRotation> SHARED_ROTATIONS = Caffeine.newBuilder()
+                                                                                       .weakValues()
+                                                                                       .build();
+
+    private final String[] names;
+    private final String[] wrappedEmojis;
+
+    private EmojiRotation(List<String> emojis) {
+        this.names = emojis.toArray(new String[0]);
+        this.wrappedEmojis = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            wrappedEmojis[i] = ":" + names[i] + ":";
+        }
+    }
+
+    public static EmojiRotation of(List<String> emojis) {
+        if (emojis == null || emojis.isEmpty()) {
+            return EMPTY;
+        }
+        return SHARED_ROTATIONS.get(List.copyOf(emojis), EmojiRotation::new);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public String getWrapped(int index) {
+        return wrappedEmojis[index];
+    }
+}
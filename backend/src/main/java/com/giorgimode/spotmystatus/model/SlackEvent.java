@@ -1,6 +1,7 @@
 package com.giorgimode.spotmystatus.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
 @Data
@@ -8,6 +9,8 @@ import lombok.Data;
 public class SlackEvent {
 
     private String token;
+    @JsonProperty("event_id")
+    private String eventId;
     private String challenge;
     private String type;
     private Event event;
@@ -1,19 +1,16 @@
 package com.giorgimode.spotmystatus.model;
 
-import static com.giorgimode.spotmystatus.helpers.SpotUtil.safeGet;
 import static com.giorgimode.spotmystatus.model.SpotifyItem.EPISODE;
-import static com.giorgimode.spotmystatus.model.SpotifyItem.TRACK;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
 import lombok.Data;
-import lombok.extern.slf4j.Slf4j;
+import lombok.EqualsAndHashCode;
 import org.apache.commons.lang3.StringUtils;
 
 @Data
-@Slf4j
+@JsonDeserialize(using = SpotifyCurrentItemDeserializer.class)
 public class SpotifyCurrentItem {
 
     @JsonProperty(value = "is_playing", required = true)
@@ -29,6 +26,8 @@ public class SpotifyCurrentItem {
 
     private String title;
 
+    private String trackId;
+
     private List<String> artists;
 
     private SpotifyDevice device;
@@ -37,74 +36,39 @@ public class SpotifyCurrentItem {
 
     private String imageUrl;
 
-    @JsonProperty("item")
-    private void unpackNestedItem(Map<String, Object> item) {
-        if (item == null) {
-            log.debug("Spotify item is null");
-            return;
-        }
-        this.durationMs = ((Number) item.get("duration_ms")).longValue();
-        this.title = (String) item.get("name");
-
-        setTrackUrl(item);
-        setArtistsAndImageUrl(item);
-    }
-
-    private void setTrackUrl(Map<String, Object> item) {
-        Map<String, Object> externalUrl = safeGet(item, "external_urls");
-        this.trackUrl = safeGet(externalUrl, "spotify");
-    }
-
-    private void setArtistsAndImageUrl(Map<String, Object> item) {
-        String receivedType = (String) item.get("type");
-        if (TRACK.title().equalsIgnoreCase(receivedType)) {
-            setTrackArtists(item);
-            setTrackImageUrl(item);
-        } else if (EPISODE.title().equalsIgnoreCase(receivedType)) {
-            setEpisodeArtists(item);
-            setEpisodeImageUrl(item);
-        } else {
-            log.warn("Cannot parse unknown item type {}", receivedType);
-        }
-    }
-
-    private void setEpisodeImageUrl(Map<String, Object> item) {
-        List<Map<String, String>> images = safeGet(item, "images");
-        setImageUrl(images);
+    private TrackMetadata metadata;
+
+    // epoch millis the progress refers to, the remaining time of the item counts from here rather than from when it is processed
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long fetchedAt = System.currentTimeMillis();
+
+    /**
+     * Replaces the per-response track values with the shared ones of the same track
+     */
+    public void applyMetadata(TrackMetadata trackMetadata) {
+        this.metadata = trackMetadata;
+        this.title = trackMetadata.getTitle();
+        this.artists = trackMetadata.getArtists();
+        this.trackUrl = trackMetadata.getTrackUrl();
+        this.imageUrl = trackMetadata.getImageUrl();
     }
 
-    private void setTrackImageUrl(Map<String, Object> item) {
-        Map<String, Object> album = safeGet(item, "album");
-        List<Map<String, String>> images = safeGet(album, "images");
-        setImageUrl(images);
-    }
-
-    private void setImageUrl(List<Map<String, String>> images) {
-        this.imageUrl = Optional.ofNullable(images)
-                                .map(imageList -> imageList.get(0))
-                                .map(imageMap -> imageMap.get("url"))
-                                .orElse(null);
-    }
-
-    private void setEpisodeArtists(Map<String, Object> item) {
-        Map<String, Object> show = safeGet(item, "show", Map.of());
-        this.artists = List.of((String) show.get("name"));
-    }
-
-    @SuppressWarnings("unchecked")
-    private void setTrackArtists(Map<String, Object> item) {
-        List<Map<String, Object>> trackArtists = (List<Map<String, Object>>) item.get("artists");
-        this.artists = trackArtists.stream()
-                                   .map(artistProperties -> (String) artistProperties.get("name"))
-                                   .collect(Collectors.toList());
+    public String generateFullTitle(int maxAllowedLength) {
+        String precomputedTitle = metadata == null ? null : metadata.getFullTitle(maxAllowedLength);
+        return precomputedTitle != null ? precomputedTitle : buildFullTitle(maxAllowedLength);
     }
 
-    public String generateFullTitle(int maxAllowedLength) {
+    String buildFullTitle(int maxAllowedLength) {
         String newStatus = EPISODE.title().equals(getType()) ? "PODCAST: " : "";
+        if (getArtists() == null || getArtists().isEmpty()) {
+            // e.g. local files without artist tags
+            return StringUtils.abbreviate(newStatus + getTitle(), maxAllowedLength);
+        }
         newStatus += String.join(", ", getArtists()) + " - " + getTitle();
         if (newStatus.length() > maxAllowedLength) {
             String firstArtistOnly = getArtists().get(0);
-            newStatus = StringUtils.abbreviate(firstArtistOnly + " - " + getTitle(), 100);
+            newStatus = StringUtils.abbreviate(firstArtistOnly + " - " + getTitle(), maxAllowedLength);
         }
         return newStatus;
     }
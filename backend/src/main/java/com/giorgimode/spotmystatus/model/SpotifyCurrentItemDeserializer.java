@@ -0,0 +1,211 @@
+package com.giorgimode.spotmystatus.model;
+
+import static com.giorgimode.spotmystatus.model.SpotifyItem.EPISODE;
+import static com.giorgimode.spotmystatus.model.SpotifyItem.TRACK;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streams over the Spotify player response and picks out only the fields the app uses. Everything else, most notably the long
+ * available_markets arrays of tracks and albums, is skipped without being materialized.
+ * <p>
+ * The type of the item is only known once the whole item has been read, so track and episode specific values are collected first and
+ * applied at the end.
+ */
+@Slf4j
+public class SpotifyCurrentItemDeserializer extends JsonDeserializer<SpotifyCurrentItem> {
+
+    @Override
+    public SpotifyCurrentItem deserialize(JsonParser p, DeserializationContext context) throws IOException {
+        if (!p.isExpectedStartObjectToken()) {
+            return (SpotifyCurrentItem) context.handleUnexpectedToken(SpotifyCurrentItem.class, p);
+        }
+        SpotifyCurrentItem currentItem = new SpotifyCurrentItem();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = p.getCurrentName();
+            p.nextToken();
+            switch (fieldName) {
+                case "is_playing":
+                    currentItem.setIsPlaying(p.currentToken() == JsonToken.VALUE_NULL ? null : p.getBooleanValue());
+                    break;
+                case "currently_playing_type":
+                    currentItem.setType(p.getValueAsString());
+                    break;
+                case "progress_ms":
+                    currentItem.setProgressMs(p.getValueAsLong());
+                    break;
+                case "device":
+                    currentItem.setDevice(readDevice(p));
+                    break;
+                case "item":
+                    readItem(p, currentItem);
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        return currentItem;
+    }
+
+    private SpotifyDevice readDevice(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        SpotifyDevice device = new SpotifyDevice();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = p.getCurrentName();
+            p.nextToken();
+            switch (fieldName) {
+                case "id":
+                    device.setId(p.getValueAsString());
+                    break;
+                case "name":
+                    device.setName(p.getValueAsString());
+                    break;
+                case "is_private_session":
+                    device.setPrivateSession(p.getValueAsBoolean());
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        return device;
+    }
+
+    void readItem(JsonParser p, SpotifyCurrentItem currentItem) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            log.debug("Spotify item is null");
+            p.skipChildren();
+            return;
+        }
+        String itemType = null;
+        List<String> trackArtists = new ArrayList<>(2);
+        String albumImageUrl = null;
+        String episodeImageUrl = null;
+        String showName = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = p.getCurrentName();
+            p.nextToken();
+            switch (fieldName) {
+                case "id":
+                    currentItem.setTrackId(p.getValueAsString());
+                    break;
+                case "name":
+                    currentItem.setTitle(p.getValueAsString());
+                    break;
+                case "type":
+                    itemType = p.getValueAsString();
+                    break;
+                case "duration_ms":
+                    currentItem.setDurationMs(p.currentToken() == JsonToken.VALUE_NULL ? null : p.getValueAsLong());
+                    break;
+                case "external_urls":
+                    currentItem.setTrackUrl(readField(p, "spotify"));
+                    break;
+                case "artists":
+                    readArtists(p, trackArtists);
+                    break;
+                case "album":
+                    albumImageUrl = readAlbumImageUrl(p);
+                    break;
+                case "images":
+                    episodeImageUrl = readFirstImageUrl(p);
+                    break;
+                case "show":
+                    showName = readField(p, "name");
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+
+        if (currentItem.getType() == null && itemType != null) {
+            // items outside of a player response, e.g. in the queue, carry their type only in the item itself
+            currentItem.setType(itemType.toLowerCase());
+        }
+        if (TRACK.title().equalsIgnoreCase(itemType)) {
+            currentItem.setArtists(trackArtists);
+            currentItem.setImageUrl(albumImageUrl);
+        } else if (EPISODE.title().equalsIgnoreCase(itemType)) {
+            currentItem.setArtists(showName == null ? List.of() : List.of(showName));
+            currentItem.setImageUrl(episodeImageUrl);
+        } else {
+            log.warn("Cannot parse unknown item type {}", itemType);
+        }
+    }
+
+    private void readArtists(JsonParser p, List<String> artists) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            String artistName = readField(p, "name");
+            if (artistName != null) {
+                artists.add(artistName);
+            }
+        }
+    }
+
+    private String readAlbumImageUrl(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        String imageUrl = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = p.getCurrentName();
+            p.nextToken();
+            if ("images".equals(fieldName)) {
+                imageUrl = readFirstImageUrl(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return imageUrl;
+    }
+
+    private String readFirstImageUrl(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return null;
+        }
+        String imageUrl = null;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (imageUrl == null) {
+                imageUrl = readField(p, "url");
+            } else {
+                p.skipChildren();
+            }
+        }
+        return imageUrl;
+    }
+
+    /**
+     * Reads a single string field of the current object and skips the rest of it
+     */
+    private String readField(JsonParser p, String name) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        String value = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = p.getCurrentName();
+            p.nextToken();
+            if (name.equals(fieldName)) {
+                value = p.getValueAsString();
+            } else {
+                p.skipChildren();
+            }
+        }
+        return value;
+    }
+}
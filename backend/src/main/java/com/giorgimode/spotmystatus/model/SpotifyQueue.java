@@ -0,0 +1,11 @@
+package com.giorgimode.spotmystatus.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.Data;
+
+@Data
+@JsonDeserialize(using = SpotifyQueueDeserializer.class)
+public class SpotifyQueue {
+
+    private SpotifyCurrentItem nextItem;
+}
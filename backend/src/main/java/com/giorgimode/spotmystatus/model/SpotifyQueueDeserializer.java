@@ -0,0 +1,50 @@
+package com.giorgimode.spotmystatus.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import java.io.IOException;
+
+/**
+ * Streams over the Spotify queue response and reads only the first upcoming item, the rest of the queue is skipped
+ */
+public class SpotifyQueueDeserializer extends JsonDeserializer<SpotifyQueue> {
+
+    private final SpotifyCurrentItemDeserializer itemDeserializer = new SpotifyCurrentItemDeserializer();
+
+    @Override
+    public SpotifyQueue deserialize(JsonParser p, DeserializationContext context) throws IOException {
+        if (!p.isExpectedStartObjectToken()) {
+            return (SpotifyQueue) context.handleUnexpectedToken(SpotifyQueue.class, p);
+        }
+        SpotifyQueue spotifyQueue = new SpotifyQueue();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = p.getCurrentName();
+            p.nextToken();
+            if ("queue".equals(fieldName)) {
+                spotifyQueue.setNextItem(readFirstItem(p));
+            } else {
+                p.skipChildren();
+            }
+        }
+        return spotifyQueue;
+    }
+
+    private SpotifyCurrentItem readFirstItem(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return null;
+        }
+        SpotifyCurrentItem nextItem = null;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (nextItem == null && p.currentToken() == JsonToken.START_OBJECT) {
+                nextItem = new SpotifyCurrentItem();
+                itemDeserializer.readItem(p, nextItem);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return nextItem;
+    }
+}
@@ -0,0 +1,47 @@
+package com.giorgimode.spotmystatus.model;
+
+import static com.giorgimode.spotmystatus.helpers.SpotConstants.SLACK_STATUS_MAX_LENGTH;
+import static com.giorgimode.spotmystatus.helpers.SpotConstants.TRACK_LINK_MAX_LENGTH;
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * Immutable values of a track or an episode, shared by all users playing it. Titles are built once for the lengths used by the app.
+ */
+@Getter
+public final class TrackMetadata {
+
+    private final String id;
+    private final String title;
+    private final List<String> artists;
+    private final String trackUrl;
+    private final String imageUrl;
+    private final String statusTitle;
+    private final String linkTitle;
+
+    private TrackMetadata(SpotifyCurrentItem currentItem) {
+        this.id = currentItem.getTrackId();
+        this.title = currentItem.getTitle();
+        this.artists = currentItem.getArtists() == null ? List.of() : List.copyOf(currentItem.getArtists());
+        this.trackUrl = currentItem.getTrackUrl();
+        this.imageUrl = currentItem.getImageUrl();
+        this.statusTitle = currentItem.buildFullTitle(SLACK_STATUS_MAX_LENGTH);
+        this.linkTitle = currentItem.buildFullTitle(TRACK_LINK_MAX_LENGTH);
+    }
+
+    public static TrackMetadata from(SpotifyCurrentItem currentItem) {
+        return new TrackMetadata(currentItem);
+    }
+
+    /**
+     * @return the precomputed title for the given length, or null if it has not been precomputed
+     */
+    public String getFullTitle(int maxAllowedLength) {
+        if (maxAllowedLength == SLACK_STATUS_MAX_LENGTH) {
+            return statusTitle;
+        } else if (maxAllowedLength == TRACK_LINK_MAX_LENGTH) {
+            return linkTitle;
+        }
+        return null;
+    }
+}
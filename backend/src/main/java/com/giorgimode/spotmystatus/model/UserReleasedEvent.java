@@ -0,0 +1,28 @@
+package com.giorgimode.spotmystatus.model;
+
+import lombok.Getter;
+
+/**
+ * Published whenever a user stops being synced outside of the polling loop, so that the services holding live state of the user can
+ * drop it without the clients depending on them
+ */
+@Getter
+public final class UserReleasedEvent {
+
+    private final String userId;
+    // null if the user was no longer cached when released
+    private final String teamId;
+    private final Reason reason;
+
+    public UserReleasedEvent(String userId, String teamId, Reason reason) {
+        this.userId = userId;
+        this.teamId = teamId;
+        this.reason = reason;
+    }
+
+    public enum Reason {
+        PAUSED,
+        PURGED,
+        INVALIDATED
+    }
+}
@@ -0,0 +1,49 @@
+package com.giorgimode.spotmystatus.persistence;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory index of authorized users by Slack team, so that team-scoped features do not need to query the database. It is kept up to
+ * date wherever users are loaded, authorized or removed.
+ */
+@Component
+public class TeamIndex {
+
+    private final ConcurrentMap<String, Set<String>> usersByTeam = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> teamByUser = new ConcurrentHashMap<>();
+
+    public void add(String teamId, String userId) {
+        String previousTeamId = teamByUser.put(userId, teamId);
+        if (previousTeamId != null && !previousTeamId.equals(teamId)) {
+            removeFromTeam(previousTeamId, userId);
+        }
+        usersByTeam.compute(teamId, (key, userIds) -> {
+            Set<String> teamUserIds = userIds == null ? ConcurrentHashMap.newKeySet() : userIds;
+            teamUserIds.add(userId);
+            return teamUserIds;
+        });
+    }
+
+    public void remove(String userId) {
+        String teamId = teamByUser.remove(userId);
+        if (teamId != null) {
+            removeFromTeam(teamId, userId);
+        }
+    }
+
+    public Set<String> getTeammateIds(String teamId) {
+        Set<String> userIds = usersByTeam.get(teamId);
+        return userIds == null ? Set.of() : Collections.unmodifiableSet(userIds);
+    }
+
+    private void removeFromTeam(String teamId, String userId) {
+        usersByTeam.computeIfPresent(teamId, (key, userIds) -> {
+            userIds.remove(userId);
+            return userIds.isEmpty() ? null : userIds;
+        });
+    }
+}
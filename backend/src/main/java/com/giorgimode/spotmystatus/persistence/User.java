@@ -14,7 +14,7 @@ import lombok.Data;
 @Data
 @Entity
 @Table(name = "users")
-public class User implements Serializable {
+public class User implements Serializable, UserData {
 
     private static final long serialVersionUID = -2343243243242432341L;
 
@@ -0,0 +1,32 @@
+package com.giorgimode.spotmystatus.persistence;
+
+/**
+ * Read-only view of the user attributes needed to build a {@link com.giorgimode.spotmystatus.model.CachedUser}, shared by the
+ * {@link User} entity and the lightweight {@link UserSummary} projection
+ */
+public interface UserData {
+
+    String getId();
+
+    String getTeamId();
+
+    String getSlackAccessToken();
+
+    String getSlackBotToken();
+
+    String getSpotifyRefreshToken();
+
+    Integer getTimezoneOffsetSeconds();
+
+    boolean isDisabled();
+
+    String getEmojis();
+
+    String getSpotifyItems();
+
+    String getSpotifyDevices();
+
+    Integer getSyncFrom();
+
+    Integer getSyncTo();
+}
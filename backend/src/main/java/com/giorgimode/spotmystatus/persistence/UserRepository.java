@@ -1,14 +1,76 @@
 package com.giorgimode.spotmystatus.persistence;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Single attribute changes are written with targeted update statements, which touch only the affected columns and do not need to load
+ * the entity first. Bulk updates bypass the persistence context, so it is flushed before and cleared after each of them to not leave
+ * stale managed entities behind
+ */
 @Repository
 public interface UserRepository extends JpaRepository<User, String> {
 
     User findByState(UUID state);
 
-    List<User> findAllByTeamId(String teamId);
-}
\ No newline at end of file
+    @Query("select new com.giorgimode.spotmystatus.persistence.UserSummary(u.id, u.teamId, u.slackAccessToken, u.slackBotToken, "
+        + "u.spotifyRefreshToken, u.timezoneOffsetSeconds, u.disabled, u.emojis, u.spotifyItems, u.spotifyDevices, u.syncFrom, u.syncTo) "
+        + "from User u where u.id > :lastId and u.spotifyRefreshToken is not null order by u.id")
+    List<UserSummary> findAuthorizedUsersAfter(@Param("lastId") String lastId, Pageable pageable);
+
+    /**
+     * Walks over all users with a spotify token page by page, using the last seen id as the starting point of the next page. Only one
+     * page of unmanaged projections is held in memory at a time
+     */
+    default void forEachAuthorizedUser(int pageSize, Consumer<UserSummary> action) {
+        String lastId = "";
+        List<UserSummary> page;
+        do {
+            page = findAuthorizedUsersAfter(lastId, PageRequest.of(0, pageSize));
+            page.forEach(action);
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == pageSize);
+    }
+
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update User u set u.emojis = :emojis where u.id in :userIds")
+    int updateEmojis(@Param("userIds") Collection<String> userIds, @Param("emojis") String emojis);
+
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update User u set u.spotifyItems = :spotifyItems where u.id in :userIds")
+    int updateSpotifyItems(@Param("userIds") Collection<String> userIds, @Param("spotifyItems") String spotifyItems);
+
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update User u set u.spotifyDevices = :spotifyDevices where u.id in :userIds")
+    int updateSpotifyDevices(@Param("userIds") Collection<String> userIds, @Param("spotifyDevices") String spotifyDevices);
+
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update User u set u.syncFrom = :syncFrom, u.syncTo = :syncTo where u.id in :userIds")
+    int updateSyncHours(@Param("userIds") Collection<String> userIds, @Param("syncFrom") Integer syncFrom, @Param("syncTo") Integer syncTo);
+
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update User u set u.disabled = :disabled where u.id in :userIds")
+    int updateDisabled(@Param("userIds") Collection<String> userIds, @Param("disabled") boolean disabled);
+
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update User u set u.spotifyRefreshToken = :spotifyRefreshToken where u.id = :userId")
+    int updateSpotifyRefreshToken(@Param("userId") String userId, @Param("spotifyRefreshToken") String spotifyRefreshToken);
+}
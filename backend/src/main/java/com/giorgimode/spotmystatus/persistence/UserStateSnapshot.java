@@ -0,0 +1,219 @@
+package com.giorgimode.spotmystatus.persistence;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local binary snapshot of the runtime-only state of cached users, used to warm up the cache after a restart.
+ * <p>
+ * Layout: magic, version, creation time, entry count, entries, CRC32 of everything before the checksum.
+ * Strings are stored as a length-prefixed UTF-8 byte sequence, with length -1 standing for null. The snapshot holds Spotify access tokens,
+ * so it is readable by the owner only.
+ */
+@Component
+@Slf4j
+public class UserStateSnapshot {
+
+    private static final int MAGIC = 0x534D5353;
+    private static final short VERSION = 2;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Long.BYTES + Integer.BYTES;
+    private static final byte FLAG_CLEANED = 1;
+    private static final byte FLAG_MANUAL_STATUS = 1 << 1;
+    // Spotify access tokens are issued for one hour
+    private static final Duration ACCESS_TOKEN_TTL = Duration.ofMinutes(55);
+
+    private final Path snapshotPath;
+
+    public UserStateSnapshot(SpotMyStatusProperties spotMyStatusProperties) {
+        String path = spotMyStatusProperties.getSnapshotPath();
+        this.snapshotPath = isBlank(path) ? null : Paths.get(path);
+    }
+
+    public boolean isEnabled() {
+        return snapshotPath != null;
+    }
+
+    public void write(Collection<CachedUser> users) throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        // the cache may change while being written, so the entry count has to match a stable copy
+        List<CachedUser> cachedUsers = new ArrayList<>(users);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + cachedUsers.size() * 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(cachedUsers.size());
+        for (CachedUser cachedUser : cachedUsers) {
+            writeString(out, cachedUser.getId());
+            out.writeLong(hashToken(cachedUser.getSpotifyRefreshToken()));
+            writeString(out, cachedUser.getSpotifyAccessToken());
+            out.writeLong(cachedUser.getSpotifyAccessTokenIssuedAt());
+            writeString(out, cachedUser.getSlackStatus());
+            writeString(out, cachedUser.getCurrentEmoji());
+            out.writeByte((cachedUser.isCleaned() ? FLAG_CLEANED : 0) | (cachedUser.isManualStatus() ? FLAG_MANUAL_STATUS : 0));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        // write next to the target and move it over atomically, so that a crash never leaves a half-written snapshot behind
+        Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        Files.deleteIfExists(tempPath);
+        try (FileChannel channel = FileChannel.open(tempPath, Set.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+            ownerOnlyPermissions(tempPath))) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tempPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.debug("Persisted state snapshot of {} users", cachedUsers.size());
+    }
+
+    public Map<String, Entry> read() {
+        if (!isEnabled() || !Files.isRegularFile(snapshotPath)) {
+            return Map.of();
+        }
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parse(buffer);
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable state snapshot {}", snapshotPath, e);
+            return Map.of();
+        }
+    }
+
+    private Map<String, Entry> parse(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE + Long.BYTES || !hasValidChecksum(buffer)) {
+            log.warn("State snapshot {} is corrupt. Ignoring it", snapshotPath);
+            return Map.of();
+        }
+        if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+            log.warn("State snapshot {} has an unsupported format. Ignoring it", snapshotPath);
+            return Map.of();
+        }
+        long createdAt = buffer.getLong();
+        int count = buffer.getInt();
+        Map<String, Entry> entries = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String userId = readString(buffer);
+            long refreshTokenHash = buffer.getLong();
+            String accessToken = readString(buffer);
+            long accessTokenIssuedAt = buffer.getLong();
+            boolean accessTokenValid = System.currentTimeMillis() - accessTokenIssuedAt < ACCESS_TOKEN_TTL.toMillis();
+            String slackStatus = readString(buffer);
+            String currentEmoji = readString(buffer);
+            byte flags = buffer.get();
+            entries.put(userId, new Entry(refreshTokenHash, accessTokenValid ? accessToken : null, accessTokenIssuedAt, slackStatus,
+                currentEmoji, (flags & FLAG_CLEANED) != 0, (flags & FLAG_MANUAL_STATUS) != 0));
+        }
+        log.info("Loaded state snapshot of {} users created {} seconds ago", count, (System.currentTimeMillis() - createdAt) / 1000);
+        return entries;
+    }
+
+    private boolean hasValidChecksum(ByteBuffer buffer) {
+        int payloadLength = buffer.limit() - Long.BYTES;
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(payloadLength);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue() == buffer.getLong(payloadLength);
+    }
+
+    private static FileAttribute<?>[] ownerOnlyPermissions(Path path) {
+        if (!path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[0];
+        }
+        return new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))};
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static long hashToken(String token) {
+        return token == null ? 0L : Hashing.sha256().hashString(token, UTF_8).asLong();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry {
+
+        private final long refreshTokenHash;
+        private final String spotifyAccessToken;
+        private final long spotifyAccessTokenIssuedAt;
+        private final String slackStatus;
+        private final String currentEmoji;
+        private final boolean cleaned;
+        private final boolean manualStatus;
+
+        /**
+         * A snapshot entry only applies to a user whose refresh token has not changed since the snapshot was taken
+         */
+        public boolean matches(UserData user) {
+            return user != null && refreshTokenHash == hashToken(user.getSpotifyRefreshToken());
+        }
+
+        public void applyTo(CachedUser cachedUser) {
+            cachedUser.setSpotifyAccessTokenIssuedAt(spotifyAccessTokenIssuedAt);
+            cachedUser.setSlackStatus(slackStatus);
+            cachedUser.setCurrentEmoji(currentEmoji);
+            cachedUser.setCleaned(cleaned);
+            cachedUser.setManualStatus(manualStatus);
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{slackStatus=" + slackStatus + ", cleaned=" + cleaned + ", manualStatus=" + manualStatus
+                + ", hasAccessToken=" + (spotifyAccessToken != null) + "}";
+        }
+    }
+}
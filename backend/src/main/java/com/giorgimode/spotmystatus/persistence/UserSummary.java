@@ -0,0 +1,28 @@
+package com.giorgimode.spotmystatus.persistence;
+
+import lombok.Value;
+
+/**
+ * Unmanaged projection of a user row, used for bulk reads which should not fill up the persistence context
+ */
+@Value
+public class UserSummary implements UserData {
+
+    String id;
+    String teamId;
+    String slackAccessToken;
+    String slackBotToken;
+    String spotifyRefreshToken;
+    Integer timezoneOffsetSeconds;
+    boolean disabled;
+    String emojis;
+    String spotifyItems;
+    String spotifyDevices;
+    Integer syncFrom;
+    Integer syncTo;
+
+    @Override
+    public String toString() {
+        return "UserSummary{userId=" + id + ", teamId=" + teamId + "}";
+    }
+}
@@ -0,0 +1,202 @@
+package com.giorgimode.spotmystatus.persistence;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Collects changes to user configuration and persists them asynchronously, so that polling and interaction threads never wait on the
+ * database. Multiple changes to the same user are merged into a single update, which is flushed either when enough users are pending or
+ * periodically, and always on shutdown.
+ */
+@Component
+@Slf4j
+public class UserWriteBehindQueue {
+
+    private final ConcurrentMap<String, UserUpdate> pendingUpdates = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("user-write-behind-%d").setDaemon(true).build());
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public UserWriteBehindQueue(UserRepository userRepository, PlatformTransactionManager transactionManager,
+        @Value("${spotmystatus.persistence_batch_size:50}") int batchSize) {
+
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    public void update(String userId, Consumer<UserUpdate> change) {
+        UserUpdate userUpdate = new UserUpdate();
+        change.accept(userUpdate);
+        pendingUpdates.merge(userId, userUpdate, UserUpdate::merge);
+        if (pendingUpdates.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Drops pending changes of a user, e.g. when the user has been deleted
+     */
+    public void discard(String userId) {
+        pendingUpdates.remove(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${spotmystatus.persistence_flush_rate:2000}")
+    public synchronized void flush() {
+        while (!pendingUpdates.isEmpty()) {
+            Map<String, UserUpdate> batch = drainBatch();
+            try {
+                transactionTemplate.executeWithoutResult(status -> persist(batch));
+                log.debug("Persisted pending changes of {} users", batch.size());
+            } catch (Exception e) {
+                log.error("Failed to persist pending changes of {} users. Retrying with the next flush", batch.size(), e);
+                // changes queued in the meantime are newer and take precedence over the failed ones
+                batch.forEach((userId, failedUpdate) -> pendingUpdates.merge(userId, failedUpdate, (newer, failed) -> failed.merge(newer)));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes only the changed columns. Users receiving the same value share a single update statement
+     */
+    private void persist(Map<String, UserUpdate> batch) {
+        usersByValue(batch, userUpdate -> userUpdate.emojisChanged, userUpdate -> userUpdate.emojis)
+            .forEach((emojis, userIds) -> userRepository.updateEmojis(userIds, emojis));
+        usersByValue(batch, userUpdate -> userUpdate.spotifyItemsChanged, userUpdate -> userUpdate.spotifyItems)
+            .forEach((spotifyItems, userIds) -> userRepository.updateSpotifyItems(userIds, spotifyItems));
+        usersByValue(batch, userUpdate -> userUpdate.spotifyDevicesChanged, userUpdate -> userUpdate.spotifyDevices)
+            .forEach((spotifyDevices, userIds) -> userRepository.updateSpotifyDevices(userIds, spotifyDevices));
+        usersByValue(batch, userUpdate -> userUpdate.syncHoursChanged, userUpdate -> Arrays.asList(userUpdate.syncFrom, userUpdate.syncTo))
+            .forEach((syncHours, userIds) -> userRepository.updateSyncHours(userIds, syncHours.get(0), syncHours.get(1)));
+        usersByValue(batch, userUpdate -> userUpdate.disabled != null, userUpdate -> userUpdate.disabled)
+            .forEach((disabled, userIds) -> userRepository.updateDisabled(userIds, disabled));
+    }
+
+    private static <T> Map<T, List<String>> usersByValue(Map<String, UserUpdate> batch, Predicate<UserUpdate> changed,
+        Function<UserUpdate, T> value) {
+
+        Map<T, List<String>> usersByValue = new HashMap<>();
+        batch.forEach((userId, userUpdate) -> {
+            if (changed.test(userUpdate)) {
+                usersByValue.computeIfAbsent(value.apply(userUpdate), key -> new ArrayList<>()).add(userId);
+            }
+        });
+        return usersByValue;
+    }
+
+    private Map<String, UserUpdate> drainBatch() {
+        Map<String, UserUpdate> batch = new LinkedHashMap<>();
+        Iterator<String> userIds = pendingUpdates.keySet().iterator();
+        while (userIds.hasNext() && batch.size() < batchSize) {
+            String userId = userIds.next();
+            UserUpdate userUpdate = pendingUpdates.remove(userId);
+            if (userUpdate != null) {
+                batch.put(userId, userUpdate);
+            }
+        }
+        return batch;
+    }
+
+    @PreDestroy
+    public void onDestroy() throws InterruptedException {
+        flushExecutor.shutdown();
+        flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        log.info("Persisting pending changes of {} users before shutdown", pendingUpdates.size());
+        flush();
+    }
+
+    /**
+     * Set of changed user columns. Only the columns that have been explicitly set are written
+     */
+    public static final class UserUpdate {
+
+        private String emojis;
+        private boolean emojisChanged;
+        private String spotifyItems;
+        private boolean spotifyItemsChanged;
+        private String spotifyDevices;
+        private boolean spotifyDevicesChanged;
+        private Integer syncFrom;
+        private Integer syncTo;
+        private boolean syncHoursChanged;
+        private Boolean disabled;
+
+        public UserUpdate emojis(String emojis) {
+            this.emojis = emojis;
+            this.emojisChanged = true;
+            return this;
+        }
+
+        public UserUpdate spotifyItems(String spotifyItems) {
+            this.spotifyItems = spotifyItems;
+            this.spotifyItemsChanged = true;
+            return this;
+        }
+
+        public UserUpdate spotifyDevices(String spotifyDevices) {
+            this.spotifyDevices = spotifyDevices;
+            this.spotifyDevicesChanged = true;
+            return this;
+        }
+
+        public UserUpdate syncHours(Integer syncFrom, Integer syncTo) {
+            this.syncFrom = syncFrom;
+            this.syncTo = syncTo;
+            this.syncHoursChanged = true;
+            return this;
+        }
+
+        public UserUpdate disabled(boolean disabled) {
+            this.disabled = disabled;
+            return this;
+        }
+
+        private UserUpdate merge(UserUpdate newer) {
+            if (newer.emojisChanged) {
+                emojis(newer.emojis);
+            }
+            if (newer.spotifyItemsChanged) {
+                spotifyItems(newer.spotifyItems);
+            }
+            if (newer.spotifyDevicesChanged) {
+                spotifyDevices(newer.spotifyDevices);
+            }
+            if (newer.syncHoursChanged) {
+                syncHours(newer.syncFrom, newer.syncTo);
+            }
+            if (newer.disabled != null) {
+                disabled(newer.disabled);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.giorgimode.spotmystatus.service;
+
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers which inputs the currently published home tab of a user was rendered from. Slack keeps showing a published home tab, so it
+ * only has to be published again once its inputs change. Changes made through the app invalidate the entry right away, everything else
+ * (e.g. a device going offline) is picked up by comparing the inputs. Updates requested just moments after a publish are deferred to the
+ * end of the debounce window, so that a change made in the meantime is still published.
+ */
+@Component
+@Slf4j
+public class HomeTabCache {
+
+    private static final String UPDATES_METRIC = "spotmystatus.home_tab.updates";
+
+    private final Cache<String, PublishedHomeTab> publishedHomeTabs;
+    private final long debounceMillis;
+    private final ScheduledExecutorService trailingUpdateExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("home-tab-%d").setDaemon(true).build());
+    private final Set<String> pendingTrailingUpdates = ConcurrentHashMap.newKeySet();
+    private final Counter debouncedCounter;
+    private final Counter unchangedCounter;
+    private final Counter publishedCounter;
+
+    public HomeTabCache(SpotMyStatusProperties spotMyStatusProperties, MeterRegistry meterRegistry) {
+        this.publishedHomeTabs = Caffeine.newBuilder()
+                                         .expireAfterWrite(spotMyStatusProperties.getHomeTabTtl(), TimeUnit.MILLISECONDS)
+                                         .build();
+        this.debounceMillis = spotMyStatusProperties.getHomeTabDebounce();
+        this.debouncedCounter = meterRegistry.counter(UPDATES_METRIC, "result", "debounced");
+        this.unchangedCounter = meterRegistry.counter(UPDATES_METRIC, "result", "unchanged");
+        this.publishedCounter = meterRegistry.counter(UPDATES_METRIC, "result", "published");
+    }
+
+    /**
+     * @param trailingUpdate updates the home tab once more at the end of the debounce window, at most one is pending per user
+     * @return true if the home tab of the user has been published so recently, that its inputs do not even need to be collected again
+     */
+    public boolean isRecentlyPublished(String userId, Consumer<String> trailingUpdate) {
+        PublishedHomeTab publishedHomeTab = publishedHomeTabs.getIfPresent(userId);
+        if (publishedHomeTab == null) {
+            return false;
+        }
+        long remainingMillis = publishedHomeTab.publishedAt + debounceMillis - System.currentTimeMillis();
+        if (remainingMillis <= 0) {
+            return false;
+        }
+        debouncedCounter.increment();
+        if (pendingTrailingUpdates.add(userId)) {
+            trailingUpdateExecutor.schedule(() -> runTrailingUpdate(userId, trailingUpdate), remainingMillis, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    private void runTrailingUpdate(String userId, Consumer<String> trailingUpdate) {
+        pendingTrailingUpdates.remove(userId);
+        try {
+            trailingUpdate.accept(userId);
+        } catch (Exception e) {
+            log.error("Failed to update home tab of user {} after debouncing", userId, e);
+        }
+    }
+
+    public boolean isUnchanged(String userId, int inputHash) {
+        PublishedHomeTab publishedHomeTab = publishedHomeTabs.getIfPresent(userId);
+        if (publishedHomeTab != null && publishedHomeTab.inputHash == inputHash) {
+            unchangedCounter.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public void published(String userId, int inputHash) {
+        publishedHomeTabs.put(userId, new PublishedHomeTab(inputHash, System.currentTimeMillis()));
+        publishedCounter.increment();
+    }
+
+    public void invalidate(String userId) {
+        publishedHomeTabs.invalidate(userId);
+    }
+
+    @PreDestroy
+    public void onDestroy() {
+        trailingUpdateExecutor.shutdownNow();
+    }
+
+    @RequiredArgsConstructor
+    private static class PublishedHomeTab {
+
+        private final int inputHash;
+        private final long publishedAt;
+    }
+}
@@ -0,0 +1,56 @@
+package com.giorgimode.spotmystatus.service;
+
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent.Reason;
+import com.giorgimode.spotmystatus.spotify.SpotifyDeviceInventory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single path through which the live state of a user (board entry, prerendered status flip, pending status write) is dropped, be it
+ * because the user went to sleep, went offline or stopped playing, or because the user was paused, purged or invalidated. Devices and
+ * working hours are dropped only once the user is removed
+ */
+@Component
+@Slf4j
+public class LiveStateCleaner {
+
+    private final TeamTrackBoard teamTrackBoard;
+    private final SpotifyDeviceInventory spotifyDeviceInventory;
+    private final NextTrackPrerenderer nextTrackPrerenderer;
+    private final StatusWriteStage statusWriteStage;
+    private final WorkingHoursWheel workingHoursWheel;
+
+    public LiveStateCleaner(TeamTrackBoard teamTrackBoard, SpotifyDeviceInventory spotifyDeviceInventory,
+        NextTrackPrerenderer nextTrackPrerenderer, StatusWriteStage statusWriteStage, WorkingHoursWheel workingHoursWheel) {
+
+        this.teamTrackBoard = teamTrackBoard;
+        this.spotifyDeviceInventory = spotifyDeviceInventory;
+        this.nextTrackPrerenderer = nextTrackPrerenderer;
+        this.statusWriteStage = statusWriteStage;
+        this.workingHoursWheel = workingHoursWheel;
+    }
+
+    /**
+     * Drops the state which only holds while the user is being synced. The user is picked up again by the next poll
+     */
+    public void release(CachedUser user) {
+        teamTrackBoard.remove(user.getTeamId(), user.getId());
+        nextTrackPrerenderer.cancel(user);
+    }
+
+    @EventListener
+    public void onUserReleased(UserReleasedEvent event) {
+        log.debug("Dropping live state of user {}, since the user has been {}", event.getUserId(), event.getReason());
+        teamTrackBoard.remove(event.getTeamId(), event.getUserId());
+        nextTrackPrerenderer.cancel(event.getUserId());
+        statusWriteStage.discard(event.getUserId());
+        if (event.getReason() != Reason.PAUSED) {
+            // a paused user keeps the devices for the home tab, and stays cached with the working hours
+            spotifyDeviceInventory.remove(event.getUserId());
+            workingHoursWheel.remove(event.getUserId());
+        }
+    }
+}
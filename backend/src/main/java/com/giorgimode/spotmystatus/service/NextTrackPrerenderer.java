@@ -0,0 +1,162 @@
+package com.giorgimode.spotmystatus.service;
+
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import com.giorgimode.spotmystatus.spotify.SpotifyClient;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Flips the status to the next item of the user's queue right at the predicted end of the current track, instead of up to a poll interval
+ * later. The queue is read once per track, its next item already carries the shared metadata with the rendered titles. The flip is moved
+ * along when the user seeks and dropped once nothing plays anymore. A poll of the user right after the flip verifies the prediction, so
+ * that a skipped or paused track is corrected right away. The verifying poll waits for the flip to reach Slack. Neither the flip nor the
+ * verifying poll touch users which have been paused, purged or invalidated, or have set a manual status in the meantime.
+ */
+@Component
+@Slf4j
+public class NextTrackPrerenderer {
+
+    private static final long BOUNDARY_TOLERANCE_MS = 2000;
+    private static final long VERIFY_DELAY_MS = 1500;
+    private static final long VERIFY_TIMEOUT_MS = 60000;
+
+    private final SpotifyClient spotifyClient;
+    private final StatusWriteStage statusWriteStage;
+    private final LoadingCache<String, CachedUser> userCache;
+    private final boolean enabled;
+    private final ScheduledExecutorService flipExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("next-track-%d").setDaemon(true).build());
+    private final ConcurrentMap<String, ScheduledFlip> scheduledFlips = new ConcurrentHashMap<>();
+    private final Counter flipCounter;
+
+    public NextTrackPrerenderer(SpotifyClient spotifyClient, StatusWriteStage statusWriteStage, LoadingCache<String, CachedUser> userCache,
+        SpotMyStatusProperties spotMyStatusProperties, MeterRegistry meterRegistry) {
+
+        this.spotifyClient = spotifyClient;
+        this.statusWriteStage = statusWriteStage;
+        this.userCache = userCache;
+        this.enabled = Boolean.TRUE.equals(spotMyStatusProperties.getNextTrackPrerenderEnabled());
+        this.flipCounter = meterRegistry.counter("spotmystatus.next_track.flips");
+    }
+
+    /**
+     * @param verifier polls the user once the flip is due to have taken place
+     */
+    public void prerender(CachedUser user, SpotifyCurrentItem currentTrack, Consumer<CachedUser> verifier) {
+        if (!enabled || currentTrack.getTrackId() == null || currentTrack.getDurationMs() == null) {
+            return;
+        }
+        long boundaryAt = currentTrack.getFetchedAt() + currentTrack.getDurationMs() - currentTrack.getProgressMs();
+        ScheduledFlip scheduledFlip = scheduledFlips.get(user.getId());
+        if (scheduledFlip != null && scheduledFlip.trackId.equals(currentTrack.getTrackId())) {
+            if (scheduledFlip.nextItem != null && Math.abs(scheduledFlip.boundaryAt - boundaryAt) > BOUNDARY_TOLERANCE_MS) {
+                log.trace("Moving status flip of user {} to the new end of the track", user.getId());
+                schedule(user, scheduledFlip.trackId, scheduledFlip.nextItem, boundaryAt, verifier);
+            }
+            return;
+        }
+        SpotifyCurrentItem nextItem = spotifyClient.getNextItem(user).orElse(null);
+        if (nextItem != null) {
+            nextItem.setIsPlaying(true);
+        }
+        // a track without a next item is remembered as well, so that the queue is not read again on every poll
+        schedule(user, currentTrack.getTrackId(), nextItem, boundaryAt, verifier);
+    }
+
+    public void cancel(CachedUser user) {
+        cancel(user.getId());
+    }
+
+    public void cancel(String userId) {
+        ScheduledFlip scheduledFlip = scheduledFlips.remove(userId);
+        if (scheduledFlip != null) {
+            scheduledFlip.cancel();
+        }
+    }
+
+    /**
+     * @return whether the user is still cached as this very instance and neither paused nor showing a manual status
+     */
+    public boolean isSyncing(CachedUser user) {
+        return userCache.getIfPresent(user.getId()) == user && !user.isDisabled() && !user.isManualStatus();
+    }
+
+    private void schedule(CachedUser user, String trackId, SpotifyCurrentItem nextItem, long boundaryAt, Consumer<CachedUser> verifier) {
+        ScheduledFuture<?> flip = null;
+        if (nextItem != null) {
+            // the next item starts playing at the boundary, its status expires relative to it
+            nextItem.setFetchedAt(boundaryAt);
+            long flipDelay = Math.max(0, boundaryAt - System.currentTimeMillis());
+            flip = flipExecutor.schedule(() -> flip(user, nextItem, verifier), flipDelay, TimeUnit.MILLISECONDS);
+        }
+        ScheduledFlip previousFlip = scheduledFlips.put(user.getId(), new ScheduledFlip(trackId, nextItem, boundaryAt, flip));
+        if (previousFlip != null) {
+            previousFlip.cancel();
+        }
+    }
+
+    private void flip(CachedUser user, SpotifyCurrentItem nextItem, Consumer<CachedUser> verifier) {
+        // a poll running meanwhile could find a manual status right after the check
+        user.runExclusively(() -> {
+            if (!isSyncing(user)) {
+                log.debug("Dropping status flip of user {}, who is no longer synced", user.getId());
+                return;
+            }
+            log.debug("Flipping status of user {} to the next track", user.getId());
+            flipCounter.increment();
+            statusWriteStage.submitUpdate(user, nextItem);
+            long verifyUntil = System.currentTimeMillis() + VERIFY_TIMEOUT_MS;
+            flipExecutor.schedule(() -> verify(user, verifier, verifyUntil), VERIFY_DELAY_MS, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private void verify(CachedUser user, Consumer<CachedUser> verifier, long verifyUntil) {
+        if (statusWriteStage.isWriting(user.getId()) && System.currentTimeMillis() < verifyUntil) {
+            // the flip has not reached Slack yet, there is nothing to verify so far
+            log.trace("Postponing verification of status flip of user {}", user.getId());
+            flipExecutor.schedule(() -> verify(user, verifier, verifyUntil), VERIFY_DELAY_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        verifier.accept(user);
+    }
+
+    @PreDestroy
+    public void onDestroy() {
+        flipExecutor.shutdownNow();
+    }
+
+    private static class ScheduledFlip {
+
+        private final String trackId;
+        private final SpotifyCurrentItem nextItem;
+        private final long boundaryAt;
+        private final ScheduledFuture<?> flip;
+
+        private ScheduledFlip(String trackId, SpotifyCurrentItem nextItem, long boundaryAt, ScheduledFuture<?> flip) {
+            this.trackId = trackId;
+            this.nextItem = nextItem;
+            this.boundaryAt = boundaryAt;
+            this.flip = flip;
+        }
+
+        private void cancel() {
+            if (flip != null) {
+                flip.cancel(false);
+            }
+        }
+    }
+}
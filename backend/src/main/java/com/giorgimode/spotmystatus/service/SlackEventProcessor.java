@@ -0,0 +1,101 @@
+package com.giorgimode.spotmystatus.service;
+
+import static com.giorgimode.spotmystatus.helpers.SpotUtil.detachFromRequest;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.SlackEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Processes Slack events in the background, so that they can be acknowledged right away. Slack retries events which are not acknowledged
+ * in time, those retries are recognized by their event id and skipped. A home tab update which is already queued for a user is not queued
+ * again, as it will render the latest state anyway.
+ */
+@Component
+@Slf4j
+public class SlackEventProcessor {
+
+    private static final String EVENTS_METRIC = "spotmystatus.slack_events";
+
+    private final UserInteractionService userInteractionService;
+    private final ExecutorService eventExecutor;
+    private final Cache<String, Boolean> receivedEventIds;
+    private final Set<String> pendingHomeTabUpdates = ConcurrentHashMap.newKeySet();
+    private final Counter acceptedCounter;
+    private final Counter duplicateCounter;
+    private final Counter debouncedCounter;
+    private final Counter droppedCounter;
+
+    public SlackEventProcessor(UserInteractionService userInteractionService, SpotMyStatusProperties spotMyStatusProperties,
+        @Qualifier("eventExecutor") ExecutorService eventExecutor, MeterRegistry meterRegistry) {
+
+        this.userInteractionService = userInteractionService;
+        this.eventExecutor = eventExecutor;
+        this.receivedEventIds = Caffeine.newBuilder()
+                                        .expireAfterWrite(spotMyStatusProperties.getEventDedupeTtl(), TimeUnit.MILLISECONDS)
+                                        .maximumSize(100_000)
+                                        .build();
+        this.acceptedCounter = meterRegistry.counter(EVENTS_METRIC, "result", "accepted");
+        this.duplicateCounter = meterRegistry.counter(EVENTS_METRIC, "result", "duplicate");
+        this.debouncedCounter = meterRegistry.counter(EVENTS_METRIC, "result", "debounced");
+        this.droppedCounter = meterRegistry.counter(EVENTS_METRIC, "result", "dropped");
+        meterRegistry.gauge(EVENTS_METRIC + ".queue_depth", eventExecutor, SlackEventProcessor::getQueueDepth);
+    }
+
+    public void submit(SlackEvent slackEvent) {
+        if (slackEvent.getEventId() != null && receivedEventIds.asMap().putIfAbsent(slackEvent.getEventId(), Boolean.TRUE) != null) {
+            log.debug("Skipping already received event {}", slackEvent.getEventId());
+            duplicateCounter.increment();
+            return;
+        }
+        if ("app_home_opened".equals(slackEvent.getEventType()) && !submitHomeTabUpdate(slackEvent.getUser())
+            && slackEvent.getEventId() != null) {
+            // a dropped event has not been handled, so Slack's retry of it must not be skipped as a duplicate
+            receivedEventIds.invalidate(slackEvent.getEventId());
+        }
+    }
+
+    /**
+     * @return false if the update has been dropped
+     */
+    private boolean submitHomeTabUpdate(String userId) {
+        if (!pendingHomeTabUpdates.add(userId)) {
+            log.trace("Home tab update of user {} is already queued", userId);
+            debouncedCounter.increment();
+            return true;
+        }
+        try {
+            eventExecutor.execute(detachFromRequest(() -> {
+                // events received from now on need a new update, as they might have been triggered by a later change
+                pendingHomeTabUpdates.remove(userId);
+                try {
+                    userInteractionService.updateHomeTab(userId);
+                } catch (Exception e) {
+                    log.error("Failed to update home tab of user {}", userId, e);
+                }
+            }));
+            acceptedCounter.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingHomeTabUpdates.remove(userId);
+            log.warn("Event queue is full. Dropping home tab update of user {}", userId);
+            droppedCounter.increment();
+            return false;
+        }
+    }
+
+    private static double getQueueDepth(ExecutorService executor) {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+}
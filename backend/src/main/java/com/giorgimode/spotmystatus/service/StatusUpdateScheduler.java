@@ -2,19 +2,28 @@ package com.giorgimode.spotmystatus.service;
 
 import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
 import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
 import com.giorgimode.spotmystatus.slack.SlackClient;
 import com.giorgimode.spotmystatus.spotify.SpotifyClient;
 import com.github.benmanes.caffeine.cache.LoadingCache;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+/**
+ * Polls all cached users in stages: presence check, Spotify fetch and diff run on the polling pool, while Slack status writes are handed
+ * over to the {@link StatusWriteStage}. Unchanged statuses never leave the polling pool. A poll waits for a status write of the user still
+ * in flight. Users outside their working hours are skipped until the {@link WorkingHoursWheel} wakes them up.
+ */
 @Component
 @Slf4j
 public class StatusUpdateScheduler {
@@ -24,20 +33,44 @@ public class StatusUpdateScheduler {
     private final SlackClient slackClient;
     private final SpotifyClient spotifyClient;
     private final SpotMyStatusProperties spotMyStatusProperties;
+    private final TeamTrackBoard teamTrackBoard;
+    private final LiveStateCleaner liveStateCleaner;
+    private final StatusWriteStage statusWriteStage;
+    private final NextTrackPrerenderer nextTrackPrerenderer;
+    private final WorkingHoursWheel workingHoursWheel;
+    private final Timer queueLatencyTimer;
+    private final Timer presenceTimer;
+    private final Timer spotifyTimer;
+    private final Counter changedCounter;
+    private final Counter unchangedCounter;
 
     public StatusUpdateScheduler(LoadingCache<String, CachedUser> userCache, SlackClient slackClient,
-        SpotifyClient spotifyClient, SpotMyStatusProperties spotMyStatusProperties, ExecutorService executor) {
+        SpotifyClient spotifyClient, SpotMyStatusProperties spotMyStatusProperties,
+        @Qualifier("cachedThreadPool") ExecutorService executor,
+        TeamTrackBoard teamTrackBoard, LiveStateCleaner liveStateCleaner, StatusWriteStage statusWriteStage,
+        NextTrackPrerenderer nextTrackPrerenderer, WorkingHoursWheel workingHoursWheel, MeterRegistry meterRegistry) {
         this.userCache = userCache;
         this.slackClient = slackClient;
         this.spotifyClient = spotifyClient;
         this.spotMyStatusProperties = spotMyStatusProperties;
         this.executor = executor;
+        this.teamTrackBoard = teamTrackBoard;
+        this.liveStateCleaner = liveStateCleaner;
+        this.statusWriteStage = statusWriteStage;
+        this.nextTrackPrerenderer = nextTrackPrerenderer;
+        this.workingHoursWheel = workingHoursWheel;
+        this.queueLatencyTimer = meterRegistry.timer(StatusWriteStage.QUEUE_LATENCY_METRIC, "stage", "poll");
+        this.presenceTimer = meterRegistry.timer(StatusWriteStage.STAGE_METRIC, "stage", "presence");
+        this.spotifyTimer = meterRegistry.timer(StatusWriteStage.STAGE_METRIC, "stage", "spotify");
+        this.changedCounter = meterRegistry.counter(StatusWriteStage.STAGE_METRIC + ".diff", "result", "changed");
+        this.unchangedCounter = meterRegistry.counter(StatusWriteStage.STAGE_METRIC + ".diff", "result", "unchanged");
     }
 
     @Scheduled(fixedDelay = 1000)
     public void scheduleFixedDelayTask() {
         try {
             var completableFutures = userCache.asMap().values().stream()
+                                              .filter(cachedUser -> workingHoursWheel.isAwake(cachedUser, this::sleepUser))
                                               .map(cachedUser -> pollUserAsync(cachedUser, userCache.estimatedSize()))
                                               .toArray(CompletableFuture[]::new);
             CompletableFuture.allOf(completableFutures).join();
@@ -48,10 +81,35 @@ public class StatusUpdateScheduler {
         }
     }
 
+    @Scheduled(cron = "0 * * * * *")
+    public void advanceWorkingHours() {
+        try {
+            workingHoursWheel.advance(this::sleepUser);
+        } catch (Exception e) {
+            log.error("Failed to advance working hours", e);
+        }
+    }
+
+    /**
+     * Called once when a user's working hours end. The user is not polled again before the working hours start
+     */
+    void sleepUser(CachedUser user) {
+        try {
+            liveStateCleaner.release(user);
+            cleanStatus(user);
+        } catch (Exception e) {
+            log.error("Failed to clean status of user {} after working hours", user.getId(), e);
+        }
+    }
+
     private CompletableFuture<Void> pollUserAsync(CachedUser cachedUser, long userCount) {
         try {
             sleep(userCount);
-            return CompletableFuture.runAsync(() -> pollUser(cachedUser), executor)
+            long queuedAt = System.nanoTime();
+            return CompletableFuture.runAsync(() -> {
+                queueLatencyTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                pollUser(cachedUser);
+            }, executor)
                                     .completeOnTimeout(null, spotMyStatusProperties.getTimeout(), TimeUnit.MILLISECONDS);
         } catch (Exception e) {
             log.error("Polling user {} timed out", cachedUser.getId());
@@ -65,9 +123,16 @@ public class StatusUpdateScheduler {
     }
 
     private void pollUser(CachedUser cachedUser) {
+        // waits for a status write in flight, the presence check would take a half done write for a manual status change
+        cachedUser.runExclusively(() -> pollLiveUser(cachedUser));
+    }
+
+    private void pollLiveUser(CachedUser cachedUser) {
         try {
-            if (slackClient.isUserLive(cachedUser)) {
+            if (presenceTimer.recordCallable(() -> slackClient.isUserLive(cachedUser))) {
                 updateSlackStatus(cachedUser);
+            } else {
+                liveStateCleaner.release(cachedUser);
             }
         } catch (Exception e) {
             log.error("Failed to poll user {}", cachedUser.getId(), e);
@@ -75,14 +140,52 @@ public class StatusUpdateScheduler {
     }
 
     private void updateSlackStatus(CachedUser user) {
-        spotifyClient.getCurrentLiveTrack(user)
-                     .ifPresentOrElse(usersCurrentTrack -> slackClient.updateAndPersistStatus(user, usersCurrentTrack),
-                         () -> cleanStatus(user));
+        Optional<SpotifyCurrentItem> currentTrack = spotifyTimer.record(() -> spotifyClient.getCurrentLiveTrack(user));
+        currentTrack.ifPresentOrElse(usersCurrentTrack -> {
+                teamTrackBoard.publish(user, usersCurrentTrack);
+                submitStatusUpdate(user, usersCurrentTrack);
+                nextTrackPrerenderer.prerender(user, usersCurrentTrack, this::verifyUser);
+            },
+            () -> {
+                liveStateCleaner.release(user);
+                cleanStatus(user);
+            });
+    }
+
+    /**
+     * Polls a single user out of turn, e.g. to verify a predicted track change
+     */
+    private void verifyUser(CachedUser user) {
+        if (!nextTrackPrerenderer.isSyncing(user)) {
+            return;
+        }
+        try {
+            executor.execute(() -> pollUser(user));
+        } catch (Exception e) {
+            log.error("Failed to verify status of user {}", user.getId(), e);
+        }
+    }
+
+    private void submitStatusUpdate(CachedUser user, SpotifyCurrentItem currentTrack) {
+        if (user.isShowingTrack(currentTrack)) {
+            // no Slack call is made for an unchanged track, so there is nothing to hand over
+            unchangedCounter.increment();
+            slackClient.updateAndPersistStatus(user, currentTrack);
+        } else {
+            changedCounter.increment();
+            statusWriteStage.submitUpdate(user, currentTrack);
+        }
     }
 
     private void cleanStatus(CachedUser user) {
-        if (!user.isCleaned()) {
-            slackClient.cleanStatus(user);
+        if (user.isCleaned()) {
+            return;
+        }
+        if (Boolean.TRUE.equals(spotMyStatusProperties.getExpirationOnlyEnabled())) {
+            // no Slack call is made when the status is left to expire
+            slackClient.releaseStatus(user);
+        } else {
+            statusWriteStage.submitClean(user);
         }
     }
 }
@@ -0,0 +1,173 @@
+package com.giorgimode.spotmystatus.service;
+
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import com.giorgimode.spotmystatus.slack.SlackClient;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Last stage of the polling pipeline, which writes status changes to Slack on its own bounded pool, so that slow Slack calls do not hold
+ * up polling Spotify.
+ * <p>
+ * Writes are coalesced per user: a user has at most one write queued or in flight, a write submitted during that time replaces any other
+ * pending write of the user and is sent once the current one is done. Writes following a previous one of the user within the minimum
+ * write interval are held back until it has passed, so that skipping through tracks between polls results in a single follow-up call
+ * rather than one per poll. A stale status never overwrites a newer one. Writes which cannot be queued are skipped, the next poll detects
+ * the same change again. A write is sent exclusively of the user's polls, see {@link CachedUser#runExclusively}.
+ */
+@Component
+@Slf4j
+public class StatusWriteStage {
+
+    static final String STAGE_METRIC = "spotmystatus.poll.stage";
+    static final String QUEUE_LATENCY_METRIC = "spotmystatus.poll.queue_latency";
+
+    private final SlackClient slackClient;
+    private final ExecutorService statusWriteExecutor;
+    private final long minWriteInterval;
+    // epoch millis of each user's last write, as long as it is within the minimum write interval
+    private final Cache<String, Long> lastWrites;
+    private final ScheduledExecutorService heldWriteExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("status-write-%d").setDaemon(true).build());
+    // the latest not yet sent write of each user
+    private final ConcurrentMap<String, Runnable> pendingWrites = new ConcurrentHashMap<>();
+    // users whose write is queued or in flight
+    private final Set<String> activeUsers = ConcurrentHashMap.newKeySet();
+    private final Timer writeTimer;
+    private final Timer queueLatencyTimer;
+    private final Counter supersededCounter;
+    private final Counter droppedCounter;
+
+    public StatusWriteStage(SlackClient slackClient, @Qualifier("statusWriteExecutor") ExecutorService statusWriteExecutor,
+        SpotMyStatusProperties spotMyStatusProperties, MeterRegistry meterRegistry) {
+
+        this.slackClient = slackClient;
+        this.statusWriteExecutor = statusWriteExecutor;
+        this.minWriteInterval = spotMyStatusProperties.getStatusWriteMinInterval();
+        this.lastWrites = Caffeine.newBuilder()
+                                  .expireAfterWrite(minWriteInterval, TimeUnit.MILLISECONDS)
+                                  .build();
+        this.writeTimer = meterRegistry.timer(STAGE_METRIC, "stage", "write");
+        this.queueLatencyTimer = meterRegistry.timer(QUEUE_LATENCY_METRIC, "stage", "write");
+        this.supersededCounter = meterRegistry.counter(STAGE_METRIC + ".skipped", "stage", "write", "reason", "superseded");
+        this.droppedCounter = meterRegistry.counter(STAGE_METRIC + ".skipped", "stage", "write", "reason", "queue_full");
+        meterRegistry.gauge(STAGE_METRIC + ".queue_depth", statusWriteExecutor, StatusWriteStage::getQueueDepth);
+    }
+
+    public void submitUpdate(CachedUser user, SpotifyCurrentItem currentTrack) {
+        submit(user, () -> {
+            // a poll may have found a manual status while the write was pending, or the user may have been paused
+            if (user.isManualStatus() || user.isDisabled()) {
+                log.debug("Dropping status write of user {}, who is no longer synced", user.getId());
+                return;
+            }
+            slackClient.updateAndPersistStatus(user, currentTrack);
+        });
+    }
+
+    public void submitClean(CachedUser user) {
+        submit(user, () -> slackClient.cleanStatus(user));
+    }
+
+    /**
+     * @return whether a write of the user is queued or in flight, i.e. the user's Slack status is about to change
+     */
+    public boolean isWriting(String userId) {
+        return activeUsers.contains(userId);
+    }
+
+    /**
+     * Drops the user's pending write, e.g. once the user has been purged. A write already in flight still completes
+     */
+    public void discard(String userId) {
+        pendingWrites.remove(userId);
+    }
+
+    private void submit(CachedUser user, Runnable write) {
+        String userId = user.getId();
+        // a poll of the user never overlaps with the write
+        if (pendingWrites.put(userId, () -> user.runExclusively(write)) != null) {
+            log.trace("Replaced pending status write of user {}", userId);
+            supersededCounter.increment();
+        }
+        if (activeUsers.add(userId)) {
+            dispatch(userId);
+        }
+    }
+
+    private void dispatch(String userId) {
+        Long lastWrite = lastWrites.getIfPresent(userId);
+        long holdMillis = lastWrite == null ? 0 : lastWrite + minWriteInterval - System.currentTimeMillis();
+        if (holdMillis <= 0) {
+            execute(userId);
+            return;
+        }
+        // the user stays active meanwhile, writes submitted until then replace the held one
+        log.trace("Holding back status write of user {} for {} ms", userId, holdMillis);
+        try {
+            heldWriteExecutor.schedule(() -> execute(userId), holdMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pendingWrites.remove(userId);
+            activeUsers.remove(userId);
+        }
+    }
+
+    private void execute(String userId) {
+        long queuedAt = System.nanoTime();
+        try {
+            statusWriteExecutor.execute(() -> {
+                queueLatencyTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                write(userId);
+            });
+        } catch (RejectedExecutionException e) {
+            pendingWrites.remove(userId);
+            activeUsers.remove(userId);
+            log.warn("Status write queue is full. Skipping status write of user {}", userId);
+            droppedCounter.increment();
+        }
+    }
+
+    private void write(String userId) {
+        Runnable write = pendingWrites.remove(userId);
+        try {
+            if (write != null) {
+                lastWrites.put(userId, System.currentTimeMillis());
+                writeTimer.record(write);
+            }
+        } finally {
+            activeUsers.remove(userId);
+            // a write submitted while this one was in flight has not been dispatched, as it has to be sent after this one
+            if (pendingWrites.containsKey(userId) && activeUsers.add(userId)) {
+                dispatch(userId);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void onDestroy() {
+        heldWriteExecutor.shutdownNow();
+    }
+
+    private static double getQueueDepth(ExecutorService executor) {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+}
@@ -0,0 +1,74 @@
+package com.giorgimode.spotmystatus.service;
+
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latest live track of every polled user, grouped by team. The scheduler keeps it up to date, so that team views can be rendered without
+ * calling Slack or Spotify. Tracks which have not been confirmed within the configured time are considered stale and are not returned.
+ */
+@Component
+public class TeamTrackBoard {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, BoardEntry>> tracksByTeam = new ConcurrentHashMap<>();
+    private final SpotMyStatusProperties spotMyStatusProperties;
+
+    public TeamTrackBoard(SpotMyStatusProperties spotMyStatusProperties) {
+        this.spotMyStatusProperties = spotMyStatusProperties;
+    }
+
+    public void publish(CachedUser user, SpotifyCurrentItem currentTrack) {
+        tracksByTeam.computeIfAbsent(user.getTeamId(), teamId -> new ConcurrentHashMap<>())
+                    .put(user.getId(), new BoardEntry(currentTrack, System.currentTimeMillis()));
+    }
+
+    public void remove(CachedUser user) {
+        remove(user.getTeamId(), user.getId());
+    }
+
+    /**
+     * @param teamId team of the user, or null to look for the user in all teams
+     */
+    public void remove(String teamId, String userId) {
+        if (teamId == null) {
+            tracksByTeam.values().forEach(teamTracks -> teamTracks.remove(userId));
+            return;
+        }
+        Map<String, BoardEntry> teamTracks = tracksByTeam.get(teamId);
+        if (teamTracks != null) {
+            teamTracks.remove(userId);
+        }
+    }
+
+    /**
+     * @return current tracks of the team keyed by user id
+     */
+    public Map<String, SpotifyCurrentItem> getLiveTracks(String teamId) {
+        Map<String, BoardEntry> teamTracks = tracksByTeam.get(teamId);
+        if (teamTracks == null) {
+            return Map.of();
+        }
+        long oldestValidTimestamp = System.currentTimeMillis() - spotMyStatusProperties.getTrackBoardTtl();
+        teamTracks.values().removeIf(boardEntry -> boardEntry.publishedAt < oldestValidTimestamp);
+        Map<String, SpotifyCurrentItem> liveTracks = new HashMap<>();
+        teamTracks.forEach((userId, boardEntry) -> liveTracks.put(userId, boardEntry.track));
+        return liveTracks;
+    }
+
+    private static final class BoardEntry {
+
+        private final SpotifyCurrentItem track;
+        private final long publishedAt;
+
+        private BoardEntry(SpotifyCurrentItem track, long publishedAt) {
+            this.track = track;
+            this.publishedAt = publishedAt;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.giorgimode.spotmystatus.service;
+
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.modals.Block;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Short-lived cache of rendered team views. Teammates requesting the same view while it is being rendered wait for that single rendering
+ * instead of starting their own, though never longer than the configured wait timeout.
+ */
+@Component
+public class TeamViewCache {
+
+    private static final String REQUESTS_METRIC = "spotmystatus.team_view.requests";
+
+    private final Cache<String, CompletableFuture<TeamTracksView>> tracksViews;
+    private final long waitTimeout;
+    private final Counter hitCounter;
+    private final Counter coalescedCounter;
+    private final Counter missCounter;
+
+    public TeamViewCache(SpotMyStatusProperties spotMyStatusProperties, MeterRegistry meterRegistry) {
+        this.tracksViews = Caffeine.newBuilder()
+                                   .expireAfterWrite(spotMyStatusProperties.getTeamViewTtl(), TimeUnit.MILLISECONDS)
+                                   .build();
+        this.waitTimeout = spotMyStatusProperties.getTeamViewWaitTimeout();
+        this.hitCounter = meterRegistry.counter(REQUESTS_METRIC, "result", "hit");
+        this.coalescedCounter = meterRegistry.counter(REQUESTS_METRIC, "result", "coalesced");
+        this.missCounter = meterRegistry.counter(REQUESTS_METRIC, "result", "miss");
+    }
+
+    public TeamTracksView getTracksView(String teamId, Function<String, TeamTracksView> renderer) {
+        CompletableFuture<TeamTracksView> renderedView = new CompletableFuture<>();
+        CompletableFuture<TeamTracksView> cachedView = tracksViews.asMap().putIfAbsent(teamId, renderedView);
+        if (cachedView != null) {
+            (cachedView.isDone() ? hitCounter : coalescedCounter).increment();
+            // each waiter times out on its own copy, so that a slow rendering is still shared with everyone else
+            return cachedView.copy().orTimeout(waitTimeout, TimeUnit.MILLISECONDS).join();
+        }
+        missCounter.increment();
+        try {
+            renderedView.complete(renderer.apply(teamId));
+        } catch (Throwable e) {
+            // Errors have to complete the shared rendering as well, otherwise its waiters would never be released
+            tracksViews.asMap().remove(teamId, renderedView);
+            renderedView.completeExceptionally(e);
+            throw e;
+        }
+        return renderedView.join();
+    }
+
+    /**
+     * Blocks and the serialized message of the current tracks of a team. Both are shared between requests and must not be modified
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class TeamTracksView {
+
+        private final List<Block> blocks;
+        private final String message;
+    }
+}
@@ -20,6 +20,7 @@ import static com.giorgimode.spotmystatus.helpers.SpotConstants.EMOJI_REGEX;
 import static com.giorgimode.spotmystatus.helpers.SpotConstants.MODAL_FOOTER_MESSAGE;
 import static com.giorgimode.spotmystatus.helpers.SpotConstants.PAYLOAD_TYPE_BLOCK_ACTIONS;
 import static com.giorgimode.spotmystatus.helpers.SpotConstants.PAYLOAD_TYPE_SUBMISSION;
+import static com.giorgimode.spotmystatus.helpers.SpotConstants.TRACK_LINK_MAX_LENGTH;
 import static com.giorgimode.spotmystatus.helpers.SpotUtil.OBJECT_MAPPER;
 import static com.giorgimode.spotmystatus.helpers.SpotUtil.baseUri;
 import static java.util.function.Predicate.not;
@@ -30,9 +31,12 @@ import static org.apache.commons.lang3.StringUtils.trimToNull;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.util.CollectionUtils.isEmpty;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
 import com.giorgimode.spotmystatus.model.CachedUser;
 import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import com.giorgimode.spotmystatus.model.SpotifyDevice;
 import com.giorgimode.spotmystatus.model.SpotifyItem;
 import com.giorgimode.spotmystatus.model.modals.Accessory;
 import com.giorgimode.spotmystatus.model.modals.Action;
@@ -45,12 +49,14 @@ import com.giorgimode.spotmystatus.model.modals.ModalView;
 import com.giorgimode.spotmystatus.model.modals.Option;
 import com.giorgimode.spotmystatus.model.modals.StateValue;
 import com.giorgimode.spotmystatus.model.modals.Text;
-import com.giorgimode.spotmystatus.persistence.User;
-import com.giorgimode.spotmystatus.persistence.UserRepository;
+import com.giorgimode.spotmystatus.persistence.TeamIndex;
+import com.giorgimode.spotmystatus.persistence.UserWriteBehindQueue;
+import com.giorgimode.spotmystatus.service.TeamViewCache.TeamTracksView;
 import com.giorgimode.spotmystatus.slack.SlackClient;
 import com.giorgimode.spotmystatus.spotify.SpotifyClient;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalTime;
 import java.time.OffsetTime;
 import java.time.ZoneOffset;
@@ -61,7 +67,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
@@ -81,8 +89,13 @@ public class UserInteractionService {
     static final String NO_TRACK_WARNING_MESSAGE = "Currently none of your teammates are listening to anything";
     private static final String TEXT_TYPE_PLAIN = "plain_text";
     private static final String TEXT_TYPE_MARKDOWN = "mrkdwn";
+    private static final ObjectWriter MODAL_VIEW_WRITER = OBJECT_MAPPER.writerFor(ModalView.class);
 
-    private final UserRepository userRepository;
+    private final TeamIndex teamIndex;
+    private final TeamTrackBoard teamTrackBoard;
+    private final TeamViewCache teamViewCache;
+    private final HomeTabCache homeTabCache;
+    private final UserWriteBehindQueue userWriteBehindQueue;
     private final SpotMyStatusProperties spotMyStatusProperties;
     private final LoadingCache<String, CachedUser> userCache;
     private final SlackClient slackClient;
@@ -91,11 +104,18 @@ public class UserInteractionService {
     @Value("classpath:templates/slack_modal_view_template.json")
     private Resource resourceFile;
 
-    public UserInteractionService(UserRepository userRepository,
-        SpotMyStatusProperties spotMyStatusProperties, LoadingCache<String, CachedUser> userCache,
-        SlackClient slackClient, SpotifyClient spotifyClient) {
+    // parsed once and only ever read, every view gets its own copy bound from the tree
+    private volatile JsonNode modalViewTemplate;
 
-        this.userRepository = userRepository;
+    public UserInteractionService(TeamIndex teamIndex, TeamTrackBoard teamTrackBoard, TeamViewCache teamViewCache,
+        HomeTabCache homeTabCache, UserWriteBehindQueue userWriteBehindQueue, SpotMyStatusProperties spotMyStatusProperties,
+        LoadingCache<String, CachedUser> userCache, SlackClient slackClient, SpotifyClient spotifyClient) {
+
+        this.teamIndex = teamIndex;
+        this.teamTrackBoard = teamTrackBoard;
+        this.teamViewCache = teamViewCache;
+        this.homeTabCache = homeTabCache;
+        this.userWriteBehindQueue = userWriteBehindQueue;
         this.spotMyStatusProperties = spotMyStatusProperties;
         this.userCache = userCache;
         this.slackClient = slackClient;
@@ -117,6 +137,10 @@ public class UserInteractionService {
 
     private ModalView createModalView(String userId) {
         CachedUser cachedUser = getCachedUser(userId);
+        return createModalView(cachedUser, spotifyClient.getSpotifyDevices(cachedUser));
+    }
+
+    private ModalView createModalView(CachedUser cachedUser, List<SpotifyDevice> spotifyDevices) {
         ModalView modalViewTemplate = getModalViewTemplate();
         modalViewTemplate.getBlocks().forEach(block -> {
             if (BLOCK_ID_SPOTIFY_ITEMS.equals(block.getBlockId())) {
@@ -128,7 +152,7 @@ public class UserInteractionService {
             } else if (BLOCK_ID_HOURS_INPUT.equals(block.getBlockId())) {
                 prepareHoursBlock(cachedUser, block);
             } else if (BLOCK_ID_SPOTIFY_DEVICES.equals(block.getBlockId())) {
-                prepareSpotifyDevicesBlock(cachedUser, block);
+                prepareSpotifyDevicesBlock(cachedUser, block, spotifyDevices);
             } else if (BLOCK_ID_APP_URI.equals(block.getBlockId())) {
                 block.getElements().get(0).setText(String.format(MODAL_FOOTER_MESSAGE, baseUri(spotMyStatusProperties.getRedirectUriScheme())));
             }
@@ -145,11 +169,10 @@ public class UserInteractionService {
         return null;
     }
 
-    private void prepareSpotifyDevicesBlock(CachedUser cachedUser, Block block) {
-        List<Option> spotifyDevices = spotifyClient.getSpotifyDevices(cachedUser)
-                                                   .stream()
-                                                   .map(device -> createOption(device.getId(), device.getName()))
-                                                   .collect(toList());
+    private void prepareSpotifyDevicesBlock(CachedUser cachedUser, Block block, List<SpotifyDevice> availableDevices) {
+        List<Option> spotifyDevices = availableDevices.stream()
+                                                      .map(device -> createOption(device.getId(), device.getName()))
+                                                      .collect(toList());
         Option allDevicesOption = createOption(ALL_DEVICES_ALLOWED_VALUE, ALL_DEVICES_ALLOWED_TEXT);
         if (spotifyDevices.isEmpty()) {
             block.getElement().getPlaceholder().setTextValue("All your Spotify devices are offline");
@@ -217,15 +240,35 @@ public class UserInteractionService {
         }
     }
 
+    @PostConstruct
+    void loadModalViewTemplate() {
+        try {
+            getParsedModalViewTemplate();
+        } catch (IOException e) {
+            log.error("Failed to load modal view template", e);
+        }
+    }
+
     private ModalView getModalViewTemplate() {
         try {
-            return OBJECT_MAPPER.readValue(resourceFile.getInputStream(), ModalView.class);
+            return OBJECT_MAPPER.treeToValue(getParsedModalViewTemplate(), ModalView.class);
         } catch (IOException e) {
             log.error("Failed to create modal view template", e);
             throw new ResponseStatusException(INTERNAL_SERVER_ERROR);
         }
     }
 
+    private JsonNode getParsedModalViewTemplate() throws IOException {
+        JsonNode template = modalViewTemplate;
+        if (template == null) {
+            try (InputStream inputStream = resourceFile.getInputStream()) {
+                template = OBJECT_MAPPER.readTree(inputStream);
+            }
+            modalViewTemplate = template;
+        }
+        return template;
+    }
+
     private Option createOption(String itemValue, String itemText) {
         Option option = new Option();
         option.setValue(itemValue);
@@ -273,19 +316,17 @@ public class UserInteractionService {
         updateSpotifyDevices(cachedUser, getStateValue(payload, BLOCK_ID_SPOTIFY_DEVICES).getSelectedOptions());
         updateSync(cachedUser.getId(), getStateValue(payload, BLOCK_ID_SYNC_TOGGLE).getSelectedOptions().isEmpty());
         persistChanges(cachedUser);
+        homeTabCache.invalidate(cachedUser.getId());
         updateHomeTab(cachedUser.getId());
         return null;
     }
 
     private void persistChanges(CachedUser cachedUser) {
-        userRepository.findById(cachedUser.getId()).ifPresent(user -> {
-            user.setEmojis(trimToNull(String.join(",", cachedUser.getEmojis())));
-            user.setSpotifyItems(trimToNull(cachedUser.getSpotifyItems().stream().map(SpotifyItem::title).collect(Collectors.joining(","))));
-            user.setSyncFrom(cachedUser.getSyncStartHour());
-            user.setSyncTo(cachedUser.getSyncEndHour());
-            user.setSpotifyDevices(trimToNull(String.join(",", cachedUser.getSpotifyDeviceIds())));
-            userRepository.save(user);
-        });
+        userWriteBehindQueue.update(cachedUser.getId(), userUpdate -> userUpdate
+            .emojis(trimToNull(String.join(",", cachedUser.getEmojis())))
+            .spotifyItems(trimToNull(cachedUser.getSpotifyItems().stream().map(SpotifyItem::title).collect(Collectors.joining(","))))
+            .syncHours(cachedUser.getSyncStartHour(), cachedUser.getSyncEndHour())
+            .spotifyDevices(trimToNull(String.join(",", cachedUser.getSpotifyDeviceIds()))));
     }
 
     private InteractionModal returnModalWithWarning(InvocationModal payload) {
@@ -377,6 +418,7 @@ public class UserInteractionService {
     }
 
     private void updateSync(String userId, boolean disableSync) {
+        homeTabCache.invalidate(userId);
         if (disableSync) {
             slackClient.pause(userId);
         } else {
@@ -446,7 +488,11 @@ public class UserInteractionService {
         if (isEmpty(emojiList)) {
             return;
         }
-        List<String> validationErrors = emojiList.stream().map(this::getValidationError).flatMap(Optional::stream).collect(toList());
+        CachedUser user = userCache.getIfPresent(getUserId(payload));
+        List<String> validationErrors = emojiList.stream()
+                                                 .map(emoji -> getValidationError(user, emoji))
+                                                 .flatMap(Optional::stream)
+                                                 .collect(toList());
         List<Block> blocks = payload.getView().getBlocks();
         blocks.removeIf(warningBlock -> BLOCK_ID_INVALID_EMOJI.equals(warningBlock.getBlockId()));
         for (int i = 0, blocksSize = blocks.size(); i < blocksSize; i++) {
@@ -489,11 +535,14 @@ public class UserInteractionService {
         block.getElement().setActionId(null);
     }
 
-    private Optional<String> getValidationError(String newEmojiInput) {
+    private Optional<String> getValidationError(CachedUser user, String newEmojiInput) {
+        String emoji = StringUtils.strip(newEmojiInput, ":");
         if (newEmojiInput.length() > 100) {
             return Optional.of("Emoji cannot be longer than 100 characters");
-        } else if (!StringUtils.strip(newEmojiInput, ":").matches(EMOJI_REGEX)) {
+        } else if (!emoji.matches(EMOJI_REGEX)) {
             return Optional.of("Emoji can only contain alphanumeric characters, - and _");
+        } else if (user != null && !slackClient.isEmojiAvailable(user, emoji)) {
+            return Optional.of("Emoji :" + emoji + ": is not available in this workspace");
         }
         return Optional.empty();
     }
@@ -547,6 +596,7 @@ public class UserInteractionService {
     }
 
     public void updateHomeTabForMissingUser(String userId) {
+        homeTabCache.invalidate(userId);
         try {
             InteractionModal homeModal = new InteractionModal();
             homeModal.setUserId(userId);
@@ -567,20 +617,57 @@ public class UserInteractionService {
     public void updateHomeTab(String userId) {
         if (isUserMissing(userId)) {
             log.trace("Skipping updating home tab. User {} not found", userId);
+            return;
+        }
+        if (homeTabCache.isRecentlyPublished(userId, this::updateHomeTab)) {
+            log.trace("Deferring home tab update. Home tab of user {} has just been published", userId);
+            return;
+        }
+        CachedUser cachedUser = getCachedUser(userId);
+        List<SpotifyDevice> spotifyDevices = spotifyClient.getSpotifyDevices(cachedUser);
+        int inputHash = getHomeTabInputHash(cachedUser, spotifyDevices);
+        if (homeTabCache.isUnchanged(userId, inputHash)) {
+            log.trace("Skipping updating home tab. Home tab of user {} is up to date", userId);
+            return;
+        }
+        InteractionModal homeModal = new InteractionModal();
+        homeModal.setUserId(userId);
+        ModalView modalView = new ModalView();
+        modalView.setType("home");
+        homeModal.setView(modalView);
+        List<Block> blocks = createModalView(cachedUser, spotifyDevices).getBlocks();
+        updateBlocks(blocks);
+        modalView.setBlocks(blocks);
+        String response = slackClient.notifyUser(SLACK_VIEW_PUBLISH_URI, homeModal, userId);
+        log.trace("Slack returned response when updating home tab {}", response);
+        if (isOk(response)) {
+            homeTabCache.published(userId, inputHash);
         } else {
-            InteractionModal homeModal = new InteractionModal();
-            homeModal.setUserId(userId);
-            ModalView modalView = new ModalView();
-            modalView.setType("home");
-            homeModal.setView(modalView);
-            List<Block> blocks = createModalView(userId).getBlocks();
-            updateBlocks(blocks);
-            modalView.setBlocks(blocks);
-            String response = slackClient.notifyUser(SLACK_VIEW_PUBLISH_URI, homeModal, userId);
-            log.trace("Slack returned response when updating home tab {}", response);
+            log.warn("Failed to publish home tab of user {}: {}", userId, response);
+        }
+    }
+
+    private boolean isOk(String slackResponse) {
+        try {
+            return slackResponse != null && OBJECT_MAPPER.readTree(slackResponse).path("ok").asBoolean();
+        } catch (JsonProcessingException e) {
+            return false;
         }
     }
 
+    /**
+     * Forces the next home tab update of the user to be published, e.g. after the user configuration has been changed
+     */
+    public void invalidateHomeTab(String userId) {
+        homeTabCache.invalidate(userId);
+    }
+
+    private int getHomeTabInputHash(CachedUser cachedUser, List<SpotifyDevice> spotifyDevices) {
+        return Objects.hash(cachedUser.getEmojis(), cachedUser.getSpotifyItems(), cachedUser.getSpotifyDeviceIds(),
+            cachedUser.getSyncStartHour(), cachedUser.getSyncEndHour(), cachedUser.getTimezoneOffsetSeconds(), cachedUser.isDisabled(),
+            spotifyDevices);
+    }
+
     private Block createSignupBlockForMissingUser() {
         Block signupBlock = new Block();
         signupBlock.setType("section");
@@ -649,24 +736,31 @@ public class UserInteractionService {
     }
 
     public String getCurrentTracksMessage(String userId) {
-        ModalView currentTracksView = getCurrentTracksView(userId);
-        return safeWrite(currentTracksView).orElse("Failed to fetch the tracks");
+        return Optional.ofNullable(getTeamTracksView(userId).getMessage()).orElse("Failed to fetch the tracks");
     }
 
     private ModalView getCurrentTracksView(String userId) {
         ModalView trackMessage = new ModalView();
+        trackMessage.setBlocks(new ArrayList<>(getTeamTracksView(userId).getBlocks()));
+        return trackMessage;
+    }
+
+    private TeamTracksView getTeamTracksView(String userId) {
         CachedUser cachedUser = getCachedUser(userId);
-        List<User> teammates = userRepository.findAllByTeamId(cachedUser.getTeamId());
-        List<Block> trackBlocks = teammates.stream()
-                                       .map(teammate -> getCachedUser(teammate.getId()))
-                                       .filter(Objects::nonNull)
-                                       .filter(slackClient::isUserLive)
-                                       .map(spotifyClient::getCurrentLiveTrack)
-                                       .flatMap(Optional::stream)
-                                       .map(this::buildSpotifyTracksMessage)
-                                       .collect(toList());
+        return teamViewCache.getTracksView(cachedUser.getTeamId(), this::renderTeamTracksView);
+    }
+
+    private TeamTracksView renderTeamTracksView(String teamId) {
+        Set<String> teammateIds = teamIndex.getTeammateIds(teamId);
+        List<Block> trackBlocks = teamTrackBoard.getLiveTracks(teamId)
+                                                .entrySet()
+                                                .stream()
+                                                .filter(userTrack -> teammateIds.contains(userTrack.getKey()))
+                                                .map(userTrack -> buildSpotifyTracksMessage(userTrack.getValue()))
+                                                .collect(toList());
+        ModalView trackMessage = new ModalView();
         trackMessage.setBlocks(trackBlocks.isEmpty() ? createEmptyLinksBlock() : trackBlocks);
-        return trackMessage;
+        return new TeamTracksView(List.copyOf(trackMessage.getBlocks()), safeWrite(trackMessage).orElse(null));
     }
 
     private List<Block> createEmptyLinksBlock() {
@@ -681,7 +775,7 @@ public class UserInteractionService {
 
     private Optional<String> safeWrite(ModalView trackMessage) {
         try {
-            return Optional.of(OBJECT_MAPPER.writeValueAsString(trackMessage));
+            return Optional.of(MODAL_VIEW_WRITER.writeValueAsString(trackMessage));
         } catch (JsonProcessingException e) {
             log.warn("Failed to parse class", e);
             return Optional.empty();
@@ -693,7 +787,8 @@ public class UserInteractionService {
         trackBlock.setType("section");
         Text titleText = new Text();
         titleText.setType(TEXT_TYPE_MARKDOWN);
-        titleText.setTextValue(String.format("<%s|%s>", spotifyCurrentItem.getTrackUrl(), spotifyCurrentItem.generateFullTitle(150)));
+        String linkTitle = spotifyCurrentItem.generateFullTitle(TRACK_LINK_MAX_LENGTH);
+        titleText.setTextValue(String.format("<%s|%s>", spotifyCurrentItem.getTrackUrl(), linkTitle));
         trackBlock.setText(titleText);
         Accessory imageAccessory = new Accessory();
         imageAccessory.setType("image");
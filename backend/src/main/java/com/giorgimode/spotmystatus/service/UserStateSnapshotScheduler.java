@@ -0,0 +1,40 @@
+package com.giorgimode.spotmystatus.service;
+
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.persistence.UserStateSnapshot;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+public class UserStateSnapshotScheduler {
+
+    private final LoadingCache<String, CachedUser> userCache;
+    private final UserStateSnapshot userStateSnapshot;
+
+    public UserStateSnapshotScheduler(LoadingCache<String, CachedUser> userCache, UserStateSnapshot userStateSnapshot) {
+        this.userCache = userCache;
+        this.userStateSnapshot = userStateSnapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${spotmystatus.snapshot_rate:30000}")
+    public void takeSnapshot() {
+        if (!userStateSnapshot.isEnabled()) {
+            return;
+        }
+        try {
+            userStateSnapshot.write(userCache.asMap().values());
+        } catch (Exception e) {
+            log.error("Failed to persist user state snapshot", e);
+        }
+    }
+
+    @PreDestroy
+    public void onDestroy() {
+        log.info("Persisting user state snapshot before shutdown");
+        takeSnapshot();
+    }
+}
@@ -0,0 +1,192 @@
+package com.giorgimode.spotmystatus.service;
+
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Working hours of all users as a time wheel of one bucket per UTC minute of the day. A user is registered with the minute the working
+ * hours start (wake) and end (sleep) and is only touched again when one of these minutes is reached, so users outside their working hours
+ * cost a single lookup per poll. Working hours are stored as UTC HHmm and fall back to the configured defaults when the user has none.
+ * Registering a user and firing the buckets share one lock, so that no transition gets lost in between.
+ */
+@Component
+@Slf4j
+public class WorkingHoursWheel {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+    private static final long MILLIS_PER_MINUTE = 60_000;
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final Set<String>[] wakeBuckets = createBuckets();
+    private final Set<String>[] sleepBuckets = createBuckets();
+    private final LoadingCache<String, CachedUser> userCache;
+    private final SpotMyStatusProperties spotMyStatusProperties;
+    private int lastMinute = -1;
+
+    public WorkingHoursWheel(LoadingCache<String, CachedUser> userCache, SpotMyStatusProperties spotMyStatusProperties) {
+        this.userCache = userCache;
+        this.spotMyStatusProperties = spotMyStatusProperties;
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(spotMyStatusProperties.getWorkingHoursEnabled());
+    }
+
+    /**
+     * @param sleepAction applied if the user is registered outside the working hours
+     */
+    public boolean isAwake(CachedUser user, Consumer<CachedUser> sleepAction) {
+        return !isEnabled() || isAwake(user, currentMinute(), sleepAction);
+    }
+
+    boolean isAwake(CachedUser user, int minute, Consumer<CachedUser> sleepAction) {
+        int start = toMinute(user.getSyncStartHour(), spotMyStatusProperties.getSyncStartHr());
+        int end = toMinute(user.getSyncEndHour(), spotMyStatusProperties.getSyncEndHr());
+        Window window = windows.get(user.getId());
+        if (window == null || !window.matches(start, end)) {
+            return register(user, start, end, minute, sleepAction);
+        }
+        return !window.asleep;
+    }
+
+    /**
+     * Drops the working hours of a user who is no longer cached, instead of waiting for the user's buckets to fire
+     */
+    public synchronized void remove(String userId) {
+        unregister(userId);
+    }
+
+    /**
+     * Fires the buckets of all minutes passed since the last call, so that a delayed tick does not skip any transition
+     */
+    public void advance(Consumer<CachedUser> sleepAction) {
+        if (isEnabled()) {
+            advance(currentMinute(), sleepAction);
+        }
+    }
+
+    synchronized void advance(int minute, Consumer<CachedUser> sleepAction) {
+        if (minute == lastMinute) {
+            return;
+        }
+        int from = lastMinute < 0 ? minute : (lastMinute + 1) % MINUTES_PER_DAY;
+        lastMinute = minute;
+        for (int current = from; ; current = (current + 1) % MINUTES_PER_DAY) {
+            fire(wakeBuckets[current], false, sleepAction);
+            fire(sleepBuckets[current], true, sleepAction);
+            if (current == minute) {
+                return;
+            }
+        }
+    }
+
+    private void fire(Set<String> bucket, boolean asleep, Consumer<CachedUser> sleepAction) {
+        for (String userId : bucket) {
+            Window window = windows.get(userId);
+            CachedUser user = userCache.getIfPresent(userId);
+            if (window == null || user == null) {
+                log.trace("Dropping working hours of removed user {}", userId);
+                unregister(userId);
+                continue;
+            }
+            if (window.asleep == asleep) {
+                continue;
+            }
+            window.asleep = asleep;
+            if (asleep) {
+                log.debug("Working hours of user {} ended", userId);
+                sleepAction.accept(user);
+            } else {
+                log.debug("Working hours of user {} started", userId);
+            }
+        }
+    }
+
+    private synchronized boolean register(CachedUser user, int start, int end, int minute, Consumer<CachedUser> sleepAction) {
+        Window registered = windows.get(user.getId());
+        if (registered != null && registered.matches(start, end)) {
+            // registered by another poll meanwhile
+            return !registered.asleep;
+        }
+        Window window = new Window(start, end, !isWithin(start, end, minute));
+        Window previous = windows.put(user.getId(), window);
+        if (previous != null) {
+            removeFromBuckets(user.getId(), previous);
+        }
+        // equal start and end stand for no working hours at all
+        if (start != end) {
+            wakeBuckets[start].add(user.getId());
+            sleepBuckets[end].add(user.getId());
+        }
+        log.trace("Registered working hours of user {} from minute {} to {}", user.getId(), start, end);
+        if (window.asleep) {
+            sleepAction.accept(user);
+        }
+        return !window.asleep;
+    }
+
+    private void unregister(String userId) {
+        Window window = windows.remove(userId);
+        if (window != null) {
+            removeFromBuckets(userId, window);
+        }
+    }
+
+    private void removeFromBuckets(String userId, Window window) {
+        if (window.start != window.end) {
+            wakeBuckets[window.start].remove(userId);
+            sleepBuckets[window.end].remove(userId);
+        }
+    }
+
+    private static boolean isWithin(int start, int end, int minute) {
+        if (start < end) {
+            return minute >= start && minute < end;
+        }
+        return start == end || minute >= start || minute < end;
+    }
+
+    private static int toMinute(Integer hour, Integer defaultHour) {
+        if (hour == null) {
+            return defaultHour == null ? 0 : defaultHour % 24 * 60;
+        }
+        return hour / 100 % 24 * 60 + hour % 100 % 60;
+    }
+
+    private static int currentMinute() {
+        return (int) (System.currentTimeMillis() / MILLIS_PER_MINUTE % MINUTES_PER_DAY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String>[] createBuckets() {
+        Set<String>[] buckets = new Set[MINUTES_PER_DAY];
+        for (int i = 0; i < MINUTES_PER_DAY; i++) {
+            buckets[i] = ConcurrentHashMap.newKeySet();
+        }
+        return buckets;
+    }
+
+    private static class Window {
+
+        private final int start;
+        private final int end;
+        private volatile boolean asleep;
+
+        private Window(int start, int end, boolean asleep) {
+            this.start = start;
+            this.end = end;
+            this.asleep = asleep;
+        }
+
+        private boolean matches(int start, int end) {
+            return this.start == start && this.end == end;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.giorgimode.spotmystatus.slack;
+
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Emojis of each Slack team, so that emojis which Slack would refuse are skipped before a status is written. The custom emojis of a team
+ * are fetched in the background when first needed, and refreshed the same way once older than the configured TTL. Until the first fetch has
+ * completed, all emojis count as available, so that no status write waits for the emoji list. Standard emojis are not part of that list, so
+ * emojis refused by Slack are remembered per team for the same TTL. A custom emoji always counts as available, even if it has been refused
+ * before it was added to the team.
+ */
+@Component
+@Slf4j
+public class EmojiCatalog {
+
+    private final Cache<String, Catalog> catalogs = Caffeine.newBuilder()
+                                                            .expireAfterAccess(1, TimeUnit.DAYS)
+                                                            .build();
+    private final ExecutorService executor;
+    private final long refreshAfterMillis;
+
+    public EmojiCatalog(SpotMyStatusProperties spotMyStatusProperties, @Qualifier("cachedThreadPool") ExecutorService executor) {
+        this.executor = executor;
+        this.refreshAfterMillis = spotMyStatusProperties.getEmojiCatalogTtl();
+    }
+
+    /**
+     * @param emoji  emoji name without colons
+     * @param loader fetches the custom emoji names of the user's team, returns null if they could not be retrieved
+     */
+    public boolean isAvailable(CachedUser user, String emoji, Function<CachedUser, Set<String>> loader) {
+        Catalog catalog = getCatalog(user, loader);
+        return catalog.customEmojis.contains(emoji) || !catalog.isRejected(emoji, refreshAfterMillis);
+    }
+
+    /**
+     * Remembers an emoji which Slack has refused for a status of the team
+     */
+    public void reject(String teamId, String emoji) {
+        catalogs.get(teamId, key -> new Catalog()).rejectedEmojis.put(emoji, System.currentTimeMillis());
+    }
+
+    private Catalog getCatalog(CachedUser user, Function<CachedUser, Set<String>> loader) {
+        Catalog catalog = catalogs.get(user.getTeamId(), teamId -> new Catalog());
+        // a catalog which has not been loaded yet counts as outdated
+        if (catalog.isOlderThan(refreshAfterMillis) && catalog.refreshing.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        refresh(user, catalog, loader);
+                    } finally {
+                        catalog.refreshing.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                catalog.refreshing.set(false);
+                log.debug("Skipping emoji refresh of team {}", user.getTeamId());
+            }
+        }
+        return catalog;
+    }
+
+    private void refresh(CachedUser user, Catalog catalog, Function<CachedUser, Set<String>> loader) {
+        Set<String> customEmojis = null;
+        try {
+            customEmojis = loader.apply(user);
+        } catch (Exception e) {
+            log.warn("Failed to fetch emojis of team {}", user.getTeamId(), e);
+        }
+        if (customEmojis != null) {
+            catalog.customEmojis = Set.copyOf(customEmojis);
+            log.trace("Refreshed {} emojis of team {}", customEmojis.size(), user.getTeamId());
+        }
+        // a failed fetch is not retried before the next refresh, the known emojis stay in use until then
+        catalog.loadedAt = System.currentTimeMillis();
+    }
+
+    private static class Catalog {
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private final Map<String, Long> rejectedEmojis = new ConcurrentHashMap<>();
+        private volatile Set<String> customEmojis = Set.of();
+        private volatile long loadedAt;
+
+        private boolean isOlderThan(long millis) {
+            return System.currentTimeMillis() - loadedAt > millis;
+        }
+
+        private boolean isRejected(String emoji, long rejectionMillis) {
+            Long rejectedAt = rejectedEmojis.get(emoji);
+            if (rejectedAt == null) {
+                return false;
+            }
+            if (System.currentTimeMillis() - rejectedAt > rejectionMillis) {
+                rejectedEmojis.remove(emoji, rejectedAt);
+                return false;
+            }
+            return true;
+        }
+    }
+}
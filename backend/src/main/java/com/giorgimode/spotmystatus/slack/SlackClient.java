@@ -3,6 +3,7 @@ package com.giorgimode.spotmystatus.slack;
 import static com.giorgimode.spotmystatus.helpers.SpotConstants.SLACK_BOT_SCOPES;
 import static com.giorgimode.spotmystatus.helpers.SpotConstants.SLACK_PROFILE_SCOPES;
 import static com.giorgimode.spotmystatus.helpers.SpotConstants.SLACK_REDIRECT_PATH;
+import static com.giorgimode.spotmystatus.helpers.SpotConstants.SLACK_STATUS_MAX_LENGTH;
 import static com.giorgimode.spotmystatus.helpers.SpotUtil.baseUri;
 import static com.giorgimode.spotmystatus.model.SpotifyItem.EPISODE;
 import static java.util.function.Predicate.not;
@@ -16,26 +17,32 @@ import com.giorgimode.spotmystatus.helpers.PropertyVault;
 import com.giorgimode.spotmystatus.helpers.RestHelper;
 import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
 import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.EmojiRotation;
 import com.giorgimode.spotmystatus.model.SlackMessage;
 import com.giorgimode.spotmystatus.model.SlackResponse;
 import com.giorgimode.spotmystatus.model.SlackToken;
 import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent.Reason;
+import com.giorgimode.spotmystatus.persistence.TeamIndex;
 import com.giorgimode.spotmystatus.persistence.User;
 import com.giorgimode.spotmystatus.persistence.UserRepository;
+import com.giorgimode.spotmystatus.persistence.UserWriteBehindQueue;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import java.time.LocalDateTime;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
@@ -47,25 +54,37 @@ import org.springframework.web.server.ResponseStatusException;
 @Slf4j
 public class SlackClient {
 
-    private static final Random RANDOM = new Random();
     private static final String MISSING_USER_ERROR = "User not found";
     private static final String SPOTIFY_INVALIDATED_MESSAGE = "Spotify token has been invalidated. Please authorize again";
 
     private final RestTemplate restTemplate;
     private final UserRepository userRepository;
+    private final UserWriteBehindQueue userWriteBehindQueue;
+    private final TeamIndex teamIndex;
     private final SpotMyStatusProperties configProperties;
     private final LoadingCache<String, CachedUser> userCache;
     private final PropertyVault propertyVault;
+    private final EmojiCatalog emojiCatalog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Function<CachedUser, Set<String>> customEmojiLoader = this::getCustomEmojis;
+    private final EmojiRotation defaultEmojiRotation;
+    private final String podcastEmoji;
 
-    public SlackClient(RestTemplate restTemplate, UserRepository userRepository,
-        SpotMyStatusProperties configProperties, LoadingCache<String, CachedUser> userCache,
-        PropertyVault propertyVault) {
+    public SlackClient(RestTemplate restTemplate, UserRepository userRepository, UserWriteBehindQueue userWriteBehindQueue,
+        TeamIndex teamIndex, SpotMyStatusProperties configProperties, LoadingCache<String, CachedUser> userCache,
+        PropertyVault propertyVault, EmojiCatalog emojiCatalog, ApplicationEventPublisher eventPublisher) {
 
         this.restTemplate = restTemplate;
         this.userRepository = userRepository;
+        this.userWriteBehindQueue = userWriteBehindQueue;
+        this.teamIndex = teamIndex;
         this.configProperties = configProperties;
         this.userCache = userCache;
         this.propertyVault = propertyVault;
+        this.emojiCatalog = emojiCatalog;
+        this.eventPublisher = eventPublisher;
+        this.defaultEmojiRotation = EmojiRotation.of(configProperties.getDefaultEmojis());
+        this.podcastEmoji = ":" + configProperties.getPodcastEmoji() + ":";
     }
 
     public String requestAuthorization() {
@@ -145,43 +164,73 @@ public class SlackClient {
     }
 
     private void tryUpdateAndPersistStatus(CachedUser user, SpotifyCurrentItem currentTrack) {
-        long expiringInMs = currentTrack.getDurationMs() - currentTrack.getProgressMs() + configProperties.getExpirationOverhead();
-        long expiringOnUnixTime = (System.currentTimeMillis() + expiringInMs) / 1000;
+        if (user.isShowingTrack(currentTrack)) {
+            log.trace("Track has not changed for user {}", user.getId());
+            user.setCleaned(false);
+            user.setUpdatedAt(LocalDateTime.now());
+            return;
+        }
+        long expiringInMs = currentTrack.getDurationMs() - currentTrack.getProgressMs() + getExpirationOverhead();
+        long expiringOnUnixTime = (currentTrack.getFetchedAt() + expiringInMs) / 1000;
         // Slack only allows max 100character as a status
-        String newStatus = currentTrack.generateFullTitle(100);
+        String newStatus = currentTrack.generateFullTitle(SLACK_STATUS_MAX_LENGTH);
         SlackStatusPayload statusPayload = new SlackStatusPayload(newStatus, getEmoji(currentTrack, user), expiringOnUnixTime);
         if (!newStatus.equalsIgnoreCase(user.getSlackStatus())) {
             if (updateStatus(user, statusPayload)) {
                 log.debug("Track: \"{}\" expiring in {} seconds", newStatus, expiringInMs / 1000);
                 user.setSlackStatus(newStatus);
+                user.setStatusTrackId(currentTrack.getTrackId());
             }
         } else {
             log.debug("Track \"{}\" has not changed for user {}, expiring in {} seconds", newStatus, user.getId(), expiringInMs / 1000);
+            user.setStatusTrackId(currentTrack.getTrackId());
         }
         user.setCleaned(false);
         user.setUpdatedAt(LocalDateTime.now());
     }
 
+    private long getExpirationOverhead() {
+        // a status which is never cleaned explicitly has to expire close to the end of the track
+        return isExpirationOnly() ? configProperties.getExpirationOnlyOverhead() : configProperties.getExpirationOverhead();
+    }
+
+    private boolean isExpirationOnly() {
+        return Boolean.TRUE.equals(configProperties.getExpirationOnlyEnabled());
+    }
+
     private String getEmoji(SpotifyCurrentItem currentTrack, CachedUser user) {
         if (EPISODE.title().equals(currentTrack.getType())) {
-            return ":" + configProperties.getPodcastEmoji() + ":";
+            return podcastEmoji;
         }
 
-        if (user.getEmojis().isEmpty()) {
-            List<String> defaultEmojis = configProperties.getDefaultEmojis();
-            return String.format(":%s:", defaultEmojis.get(RANDOM.nextInt(defaultEmojis.size())));
-        } else if (user.getEmojis().size() == 1) {
-            return String.format(":%s:", user.getEmojis().get(0));
-        } else {
-            String currentEmoji = Optional.ofNullable(user.getCurrentEmoji())
-                                          .filter(StringUtils::isNotBlank)
-                                          .map(emoji -> emoji.replace(":", ""))
-                                          .orElse(null);
-            List<String> emojis = user.getEmojis().stream()
-                                      .filter(emoji -> !emoji.equalsIgnoreCase(currentEmoji))
-                                      .collect(Collectors.toList());
-            return String.format(":%s:", emojis.get(RANDOM.nextInt(emojis.size())));
+        String emoji = pickEmoji(user, user.getEmojiRotation(), true);
+        if (emoji == null) {
+            emoji = pickEmoji(user, defaultEmojiRotation, false);
         }
+        return emoji;
+    }
+
+    /**
+     * Picks one of the available emojis other than the current one, each with the same chance. Falls back to the current emoji if it is
+     * the only one available and to null if none is available
+     */
+    String pickEmoji(CachedUser user, EmojiRotation rotation, boolean checkAvailability) {
+        String currentEmoji = user.getCurrentEmoji();
+        String fallback = null;
+        String pick = null;
+        int eligibleCount = 0;
+        for (int index = 0; index < rotation.size(); index++) {
+            if (checkAvailability && !isEmojiAvailable(user, rotation.getName(index))) {
+                continue;
+            }
+            if (rotation.getWrapped(index).equalsIgnoreCase(currentEmoji)) {
+                fallback = rotation.getWrapped(index);
+            } else if (ThreadLocalRandom.current().nextInt(++eligibleCount) == 0) {
+                // reservoir sampling: each eligible emoji replaces the pick with probability 1/count, which keeps the pick uniform
+                pick = rotation.getWrapped(index);
+            }
+        }
+        return pick == null ? fallback : pick;
     }
 
     private boolean updateStatus(CachedUser cachedUser, SlackStatusPayload requestStatusPayload) {
@@ -200,15 +249,35 @@ public class SlackClient {
 
     private void validateSlackResult(CachedUser cachedUser, SlackStatusPayload statusPayload, SlackStatusPayload response) {
         if ("profile_status_set_failed_not_valid_emoji".equals(response.getError())) {
-            String emojiToRemove = statusPayload.getProfile().getStatusEmoji().replace(":", "");
-            log.warn("Removing invalid emoji {} from user {}", emojiToRemove, cachedUser.getId());
-            List<String> validEmojis = cachedUser.getEmojis().stream().filter(not(emojiToRemove::equals)).collect(Collectors.toList());
-            cachedUser.setEmojis(validEmojis);
-            userRepository.findById(cachedUser.getId()).ifPresent(user -> {
-                user.setEmojis(trimToNull(String.join(",", cachedUser.getEmojis())));
-                userRepository.save(user);
-            });
+            String invalidEmoji = statusPayload.getProfile().getStatusEmoji().replace(":", "");
+            // a default emoji is not the user's to remove, it is skipped until the rejection expires
+            emojiCatalog.reject(cachedUser.getTeamId(), invalidEmoji);
+            if (cachedUser.getEmojis().contains(invalidEmoji)) {
+                log.warn("Removing invalid emoji {} from user {}", invalidEmoji, cachedUser.getId());
+                List<String> validEmojis = cachedUser.getEmojis().stream().filter(not(invalidEmoji::equals)).collect(Collectors.toList());
+                cachedUser.setEmojis(validEmojis);
+                userWriteBehindQueue.update(cachedUser.getId(), userUpdate -> userUpdate.emojis(trimToNull(String.join(",", validEmojis))));
+            }
+        }
+    }
+
+    /**
+     * @param emoji emoji name without colons
+     */
+    public boolean isEmojiAvailable(CachedUser user, String emoji) {
+        return emojiCatalog.isAvailable(user, emoji, customEmojiLoader);
+    }
+
+    private Set<String> getCustomEmojis(CachedUser user) {
+        SlackEmojiList response = RestHelper.builder()
+                                            .withBaseUrl(configProperties.getSlackUri() + "/api/emoji.list")
+                                            .withBearer(user.getSlackBotToken())
+                                            .getBody(restTemplate, SlackEmojiList.class);
+        if (response == null || !response.isOk() || response.getEmoji() == null) {
+            log.debug("Failed to fetch emojis of team {}: {}", user.getTeamId(), response == null ? null : response.getError());
+            return null;
         }
+        return response.getEmoji().keySet();
     }
 
     public void cleanStatus(CachedUser user) {
@@ -219,6 +288,7 @@ public class SlackClient {
         try {
             SlackStatusPayload statusPayload = new SlackStatusPayload();
             user.setSlackStatus("");
+            user.setStatusTrackId(null);
             updateStatus(user, statusPayload);
             user.setCleaned(true);
         } catch (Exception e) {
@@ -226,6 +296,19 @@ public class SlackClient {
         }
     }
 
+    /**
+     * Ends the status once there is nothing to show anymore. In the expiration-only lifecycle the status is left to Slack, which clears it
+     * at the expiration set along with it, otherwise it is cleaned right away. Explicit actions, like pausing or purging, always clean
+     */
+    public void releaseStatus(CachedUser user) {
+        if (isExpirationOnly()) {
+            log.debug("Leaving status of user {} to expire", user.getId());
+            user.setCleaned(true);
+        } else {
+            cleanStatus(user);
+        }
+    }
+
     private boolean isUserOffline(CachedUser user) {
         try {
             return checkIsUserOffline(user);
@@ -253,7 +336,7 @@ public class SlackClient {
         boolean isUserActive = "active".equalsIgnoreCase(response.getPresence());
         if (!isUserActive && !user.isCleaned()) {
             log.debug("User {} is away.", user.getId());
-            cleanStatus(user);
+            releaseStatus(user);
         }
         return !isUserActive;
     }
@@ -261,8 +344,12 @@ public class SlackClient {
     public void invalidateAndNotifyUser(String userId) {
         try {
             log.error("User's Slack token has been invalidated. Cleaning up user {}", userId);
+            String teamId = Optional.ofNullable(userCache.getIfPresent(userId)).map(CachedUser::getTeamId).orElse(null);
             userCache.invalidate(userId);
+            teamIndex.remove(userId);
+            userWriteBehindQueue.discard(userId);
             userRepository.deleteById(userId);
+            eventPublisher.publishEvent(new UserReleasedEvent(userId, teamId, Reason.INVALIDATED));
             notifyUser("/api/chat.postMessage", new SlackMessage(userId, SPOTIFY_INVALIDATED_MESSAGE), userId);
         } catch (Exception e) {
             log.error("Failed to clean up user properly", e);
@@ -287,6 +374,9 @@ public class SlackClient {
         boolean statusHasBeenManuallyChanged = isNotBlank(sanitizedStatus) &&
             (!sanitizedStatus.equalsIgnoreCase(user.getSlackStatus()) || user.isManualStatus());
         user.setCurrentEmoji(response.getProfile().getStatusEmoji());
+        if (!sanitizedStatus.equalsIgnoreCase(user.getSlackStatus())) {
+            user.setStatusTrackId(null);
+        }
         if (statusHasBeenManuallyChanged) {
             log.debug("Status for user {} has been manually changed. Skipping the update.", user.getId());
             user.setManualStatus(true);
@@ -308,12 +398,32 @@ public class SlackClient {
                          .postAndGetBody(restTemplate, String.class);
     }
 
+    /**
+     * Delivers the result of a slash command to its response_url. Responses which already are a message payload are posted as they are,
+     * plain text responses are wrapped into a message
+     */
+    public void respond(String responseUrl, String response) {
+        log.trace("Responding to command at {} with {}", responseUrl, response);
+        Object message = response.startsWith("{") ? response : Map.of("text", response);
+        try {
+            //noinspection deprecation: Slack issues warning on missing charset
+            RestHelper.builder()
+                      .withBaseUrl(responseUrl)
+                      .withContentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+                      .withBody(message)
+                      .post(restTemplate, String.class);
+        } catch (Exception e) {
+            log.error("Failed to respond to command at {}", responseUrl, e);
+        }
+    }
+
     public String pause(String userId) {
         return Optional.ofNullable(userCache.getIfPresent(userId))
                        .map(cachedUser -> {
                            cachedUser.setDisabled(true);
                            cleanStatus(cachedUser);
                            persistState(userId, true);
+                           eventPublisher.publishEvent(new UserReleasedEvent(userId, cachedUser.getTeamId(), Reason.PAUSED));
                            return "Status updates have been paused";
                        })
                        .orElse(MISSING_USER_ERROR);
@@ -330,18 +440,18 @@ public class SlackClient {
     }
 
     private void persistState(String userId, boolean isDisabled) {
-        userRepository.findById(userId).ifPresent(user -> {
-            user.setDisabled(isDisabled);
-            userRepository.save(user);
-        });
+        userWriteBehindQueue.update(userId, userUpdate -> userUpdate.disabled(isDisabled));
     }
 
     public String purge(String userId) {
         return Optional.ofNullable(userCache.getIfPresent(userId))
                        .map(cachedUser -> {
                            cleanStatus(cachedUser);
+                           userWriteBehindQueue.discard(userId);
                            userRepository.findById(userId).ifPresent(userRepository::delete);
                            userCache.invalidate(userId);
+                           teamIndex.remove(userId);
+                           eventPublisher.publishEvent(new UserReleasedEvent(userId, cachedUser.getTeamId(), Reason.PURGED));
                            return "User data has been purged. ";
                        })
                        .orElse(MISSING_USER_ERROR);
@@ -358,10 +468,6 @@ public class SlackClient {
             return false;
         }
 /*
-        if (isInOfflineHours(cachedUser)) {
-            log.trace("Skipping the polling for {} outside working hours", cachedUser.getId());
-            return false;
-        }
         if (isUserOffline(cachedUser)) {
             log.trace("Skipping the polling for {} since user is offline", cachedUser.getId());
             return false;
@@ -374,20 +480,6 @@ public class SlackClient {
         return true;
     }
 
-    private boolean isInOfflineHours(CachedUser user) {
-        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
-        int currentTime = now.getHour() * 100 + now.getMinute();
-        Integer offlineStart = user.getSyncEndHour();
-        Integer offlineEnd = user.getSyncStartHour();
-        if (offlineStart == null || offlineEnd == null) {
-            offlineStart = configProperties.getSyncEndHr() * 100;
-            offlineEnd = configProperties.getSyncStartHr() * 100;
-        }
-
-        return offlineEnd > offlineStart && currentTime >= offlineStart && currentTime <= offlineEnd
-            || offlineEnd < offlineStart && (currentTime >= offlineStart || currentTime <= offlineEnd);
-    }
-
     @PreDestroy
     public void onDestroy() {
         if (Boolean.TRUE.equals(configProperties.getShutdownCleanupEnabled())) {
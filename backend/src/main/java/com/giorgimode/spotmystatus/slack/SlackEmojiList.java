@@ -0,0 +1,14 @@
+package com.giorgimode.spotmystatus.slack;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.util.Map;
+import lombok.Data;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SlackEmojiList {
+
+    private boolean ok;
+    private String error;
+    private Map<String, String> emoji;
+}
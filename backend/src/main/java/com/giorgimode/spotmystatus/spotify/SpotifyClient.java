@@ -8,15 +8,21 @@ import com.giorgimode.spotmystatus.model.CachedUser;
 import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
 import com.giorgimode.spotmystatus.model.SpotifyDevice;
 import com.giorgimode.spotmystatus.model.SpotifyDevices;
+import com.giorgimode.spotmystatus.model.SpotifyQueue;
 import com.giorgimode.spotmystatus.model.SpotifyTokenResponse;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent.Reason;
+import com.giorgimode.spotmystatus.persistence.TeamIndex;
 import com.giorgimode.spotmystatus.persistence.User;
 import com.giorgimode.spotmystatus.persistence.UserRepository;
+import com.giorgimode.spotmystatus.persistence.UserWriteBehindQueue;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
@@ -28,19 +34,30 @@ public class SpotifyClient {
 
     private final SpotifyAuthClient spotifyAuthClient;
     private final UserRepository userRepository;
+    private final UserWriteBehindQueue userWriteBehindQueue;
+    private final TeamIndex teamIndex;
+    private final SpotifyDeviceInventory spotifyDeviceInventory;
+    private final TrackMetadataCache trackMetadataCache;
     private final RestTemplate restTemplate;
     private final LoadingCache<String, CachedUser> userCache;
     private final SpotMyStatusProperties spotMyStatusProperties;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public SpotifyClient(SpotifyAuthClient spotifyAuthClient, UserRepository userRepository,
-        RestTemplate restTemplate, LoadingCache<String, CachedUser> userCache,
-        SpotMyStatusProperties spotMyStatusProperties) {
+    public SpotifyClient(SpotifyAuthClient spotifyAuthClient, UserRepository userRepository, UserWriteBehindQueue userWriteBehindQueue,
+        TeamIndex teamIndex, SpotifyDeviceInventory spotifyDeviceInventory, TrackMetadataCache trackMetadataCache,
+        RestTemplate restTemplate, LoadingCache<String, CachedUser> userCache, SpotMyStatusProperties spotMyStatusProperties,
+        ApplicationEventPublisher eventPublisher) {
 
         this.spotifyAuthClient = spotifyAuthClient;
         this.userRepository = userRepository;
+        this.userWriteBehindQueue = userWriteBehindQueue;
+        this.teamIndex = teamIndex;
+        this.spotifyDeviceInventory = spotifyDeviceInventory;
+        this.trackMetadataCache = trackMetadataCache;
         this.restTemplate = restTemplate;
         this.userCache = userCache;
         this.spotMyStatusProperties = spotMyStatusProperties;
+        this.eventPublisher = eventPublisher;
     }
 
     public String requestAuthorization(UUID state) {
@@ -52,20 +69,22 @@ public class SpotifyClient {
         log.info("Retrieved spotify access token expiring in {} seconds", spotifyTokens.getExpiresIn());
         User user = userRepository.findByState(state);
         user.setSpotifyRefreshToken(spotifyTokens.getRefreshToken());
-        userRepository.save(user);
+        userRepository.updateSpotifyRefreshToken(user.getId(), spotifyTokens.getRefreshToken());
         CachedUser oldCachedUser = userCache.getIfPresent(user.getId());
         CachedUser newCachedUser = SpotUtil.toCachedUser(user, spotifyTokens.getAccessToken());
         if (oldCachedUser != null) {
             newCachedUser.setSlackStatus(oldCachedUser.getSlackStatus());
         }
         userCache.put(user.getId(), newCachedUser);
+        teamIndex.add(user.getTeamId(), user.getId());
     }
 
     public Optional<SpotifyCurrentItem> getCurrentLiveTrack(CachedUser user) {
         return getCurrentTrack(user)
             .filter(SpotifyCurrentItem::getIsPlaying)
             .filter(user::isPlayingDeviceEnabled)
-            .filter(user::isItemEnabled);
+            .filter(user::isItemEnabled)
+            .map(trackMetadataCache::applySharedMetadata);
     }
 
     private Optional<SpotifyCurrentItem> getCurrentTrack(CachedUser user) {
@@ -89,21 +108,85 @@ public class SpotifyClient {
         return false;
     }
 
+    /**
+     * Users without a device filter only need the playing device to rule out private sessions. The full player state is checked when the
+     * item changes and rechecked once the last check is older than the configured TTL, so that a switch to or from a private session in the
+     * middle of an item, or while repeating it, is noticed shortly. In between, the lighter currently-playing endpoint is polled for them,
+     * which answers with an empty 204 response whenever nothing is playing.
+     */
     private Optional<SpotifyCurrentItem> tryGetSpotifyCurrentTrack(CachedUser user) {
-        SpotifyCurrentItem currentItem = RestHelper.builder()
-                                                   .withBaseUrl(spotMyStatusProperties.getSpotifyApiUri() + "/v1/me/player")
-                                                   .withBearer(user.getSpotifyAccessToken())
-                                                   .withQueryParam("additional_types", "track,episode")
-                                                   .getBody(restTemplate, SpotifyCurrentItem.class);
-        if (currentItem == null || isPrivateSession(user.getId(), currentItem) || currentItem.getTitle() == null
-            || currentItem.getIsPlaying() == null) {
+        if (user.getSpotifyDeviceIds().isEmpty()) {
+            SpotifyCurrentItem currentlyPlaying = fetchCurrentItem(user, "/v1/me/player/currently-playing");
+            if (currentlyPlaying == null || currentlyPlaying.getTitle() == null || currentlyPlaying.getIsPlaying() == null) {
+                return Optional.empty();
+            }
+            if (!currentlyPlaying.getIsPlaying()) {
+                return Optional.of(currentlyPlaying);
+            }
+            if (isPlayerStateFresh(user, currentlyPlaying)) {
+                return user.isPrivateSession() ? Optional.empty() : Optional.of(currentlyPlaying);
+            }
+        }
+        return tryGetSpotifyPlayerState(user);
+    }
+
+    private Optional<SpotifyCurrentItem> tryGetSpotifyPlayerState(CachedUser user) {
+        SpotifyCurrentItem currentItem = fetchCurrentItem(user, "/v1/me/player");
+        if (currentItem != null) {
+            spotifyDeviceInventory.absorb(user.getId(), currentItem.getDevice());
+        }
+        user.setPlayerStateKey(null);
+        if (currentItem == null || currentItem.getTitle() == null || currentItem.getIsPlaying() == null) {
             return Optional.empty();
         }
-        return Optional.of(currentItem);
+        boolean privateSession = isPrivateSession(user.getId(), currentItem);
+        user.setPlayerStateKey(getPlayerStateKey(currentItem));
+        user.setPrivateSession(privateSession);
+        user.setPlayerStateCheckedAt(System.currentTimeMillis());
+        return privateSession ? Optional.empty() : Optional.of(currentItem);
+    }
+
+    private boolean isPlayerStateFresh(CachedUser user, SpotifyCurrentItem currentItem) {
+        return getPlayerStateKey(currentItem).equals(user.getPlayerStateKey())
+            && System.currentTimeMillis() - user.getPlayerStateCheckedAt() < spotMyStatusProperties.getPlayerStateTtl();
+    }
+
+    /**
+     * @return the id of the item, local files have none and are told apart by their title instead
+     */
+    private static String getPlayerStateKey(SpotifyCurrentItem currentItem) {
+        return currentItem.getTrackId() != null ? currentItem.getTrackId() : "local:" + currentItem.getTitle();
+    }
+
+    private SpotifyCurrentItem fetchCurrentItem(CachedUser user, String path) {
+        return RestHelper.builder()
+                         .withBaseUrl(spotMyStatusProperties.getSpotifyApiUri() + path)
+                         .withBearer(user.getSpotifyAccessToken())
+                         .withQueryParam("additional_types", "track,episode")
+                         .getBody(restTemplate, SpotifyCurrentItem.class);
+    }
+
+    /**
+     * @return the item which is going to play after the current one according to the user's queue
+     */
+    public Optional<SpotifyCurrentItem> getNextItem(CachedUser user) {
+        return tryCallSpotify(user, this::tryGetNextItem, Optional.empty());
+    }
+
+    private Optional<SpotifyCurrentItem> tryGetNextItem(CachedUser user) {
+        SpotifyQueue spotifyQueue = RestHelper.builder()
+                                              .withBaseUrl(spotMyStatusProperties.getSpotifyApiUri() + "/v1/me/player/queue")
+                                              .withBearer(user.getSpotifyAccessToken())
+                                              .getBody(restTemplate, SpotifyQueue.class);
+        return Optional.ofNullable(spotifyQueue)
+                       .map(SpotifyQueue::getNextItem)
+                       .filter(nextItem -> nextItem.getTitle() != null && nextItem.getDurationMs() != null)
+                       .filter(user::isItemEnabled)
+                       .map(trackMetadataCache::applySharedMetadata);
     }
 
     private boolean isPrivateSession(String userId, SpotifyCurrentItem spotifyCurrentItem) {
-        boolean isPrivateSession = spotifyCurrentItem.getDevice().isPrivateSession();
+        boolean isPrivateSession = spotifyCurrentItem.getDevice() != null && spotifyCurrentItem.getDevice().isPrivateSession();
         if (isPrivateSession) {
             log.debug("Skipping syncing, since user {} is in private Spotify session", userId);
         }
@@ -111,7 +194,7 @@ public class SpotifyClient {
     }
 
     public List<SpotifyDevice> getSpotifyDevices(CachedUser user) {
-        return tryCallSpotify(user, this::tryGetSpotifyDevices, List.of());
+        return spotifyDeviceInventory.getDevices(user, cachedUser -> tryCallSpotify(cachedUser, this::tryGetSpotifyDevices, null));
     }
 
     private List<SpotifyDevice> tryGetSpotifyDevices(CachedUser user) {
@@ -163,8 +246,12 @@ public class SpotifyClient {
 
     public void invalidateUser(String userId) {
         try {
+            String teamId = Optional.ofNullable(userCache.getIfPresent(userId)).map(CachedUser::getTeamId).orElse(null);
             userCache.invalidate(userId);
+            teamIndex.remove(userId);
+            userWriteBehindQueue.discard(userId);
             userRepository.deleteById(userId);
+            eventPublisher.publishEvent(new UserReleasedEvent(userId, teamId, Reason.INVALIDATED));
         } catch (Exception e) {
             log.error("Failed to clean up user properly", e);
         }
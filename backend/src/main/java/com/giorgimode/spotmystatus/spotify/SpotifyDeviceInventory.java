@@ -0,0 +1,147 @@
+package com.giorgimode.spotmystatus.spotify;
+
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.SpotifyDevice;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Known Spotify devices of each user. Devices reported by the regular playback polling are added as they show up, the full device list is
+ * only fetched when first needed and afterwards refreshed in the background once it is older than the configured TTL. Concurrent first
+ * readers share a single fetch, later readers always get the currently known devices without waiting on Spotify. Devices reported while a
+ * fetch is in flight are merged into its result, so that a refresh never drops them.
+ */
+@Component
+@Slf4j
+public class SpotifyDeviceInventory {
+
+    private final Cache<String, Inventory> inventories = Caffeine.newBuilder()
+                                                                 .expireAfterAccess(1, TimeUnit.DAYS)
+                                                                 .build();
+    private final ExecutorService executor;
+    private final long refreshAfterMillis;
+
+    public SpotifyDeviceInventory(SpotMyStatusProperties spotMyStatusProperties, @Qualifier("cachedThreadPool") ExecutorService executor) {
+        this.executor = executor;
+        this.refreshAfterMillis = spotMyStatusProperties.getDeviceInventoryTtl();
+    }
+
+    /**
+     * @param loader fetches the full device list of a user, returns null if the devices could not be retrieved
+     */
+    public List<SpotifyDevice> getDevices(CachedUser user, Function<CachedUser, List<SpotifyDevice>> loader) {
+        Inventory inventory = inventories.getIfPresent(user.getId());
+        if (inventory == null || !inventory.isLoaded()) {
+            inventory = inventories.get(user.getId(), userId -> new Inventory());
+            synchronized (inventory.initialLoadLock) {
+                // readers which waited for a concurrent first load use its result
+                if (!inventory.isLoaded()) {
+                    refresh(user, inventory, loader);
+                }
+            }
+            return inventory.devices;
+        }
+        if (inventory.isOlderThan(refreshAfterMillis) && inventory.refreshing.compareAndSet(false, true)) {
+            Inventory staleInventory = inventory;
+            try {
+                executor.execute(() -> {
+                    try {
+                        refresh(user, staleInventory, loader);
+                    } finally {
+                        staleInventory.refreshing.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                staleInventory.refreshing.set(false);
+                log.debug("Skipping device refresh of user {}", user.getId());
+            }
+        }
+        return inventory.devices;
+    }
+
+    /**
+     * Adds a device seen in a playback response, unless it is already known
+     */
+    public void absorb(String userId, SpotifyDevice device) {
+        if (device == null || device.getId() == null) {
+            return;
+        }
+        Inventory inventory = inventories.get(userId, key -> new Inventory());
+        synchronized (inventory) {
+            if (inventory.absorbedDuringRefresh != null) {
+                inventory.absorbedDuringRefresh.add(device);
+            }
+            if (!inventory.devices.contains(device)) {
+                inventory.devices = merge(inventory.devices, List.of(device));
+            }
+        }
+    }
+
+    public void remove(String userId) {
+        inventories.invalidate(userId);
+    }
+
+    private void refresh(CachedUser user, Inventory inventory, Function<CachedUser, List<SpotifyDevice>> loader) {
+        synchronized (inventory) {
+            inventory.absorbedDuringRefresh = new ArrayList<>();
+        }
+        List<SpotifyDevice> devices = null;
+        try {
+            devices = loader.apply(user);
+        } finally {
+            synchronized (inventory) {
+                if (devices != null) {
+                    inventory.devices = merge(devices, inventory.absorbedDuringRefresh);
+                    inventory.loadedAt = System.currentTimeMillis();
+                    log.trace("Refreshed {} devices of user {}", inventory.devices.size(), user.getId());
+                }
+                inventory.absorbedDuringRefresh = null;
+            }
+        }
+    }
+
+    /**
+     * @return the known devices with the given ones added, an added device replaces the known one with the same id
+     */
+    private static List<SpotifyDevice> merge(List<SpotifyDevice> knownDevices, List<SpotifyDevice> addedDevices) {
+        Map<String, SpotifyDevice> addedById = new LinkedHashMap<>();
+        addedDevices.forEach(device -> addedById.put(device.getId(), device));
+        List<SpotifyDevice> devices = new ArrayList<>(knownDevices.size() + addedById.size());
+        knownDevices.stream()
+                    .filter(knownDevice -> knownDevice.getId() == null || !addedById.containsKey(knownDevice.getId()))
+                    .forEach(devices::add);
+        devices.addAll(addedById.values());
+        return List.copyOf(devices);
+    }
+
+    private static class Inventory {
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private final Object initialLoadLock = new Object();
+        // devices reported while a fetch is in flight, null if none is
+        private List<SpotifyDevice> absorbedDuringRefresh;
+        private volatile List<SpotifyDevice> devices = List.of();
+        private volatile long loadedAt;
+
+        private boolean isLoaded() {
+            return loadedAt > 0;
+        }
+
+        private boolean isOlderThan(long millis) {
+            return System.currentTimeMillis() - loadedAt > millis;
+        }
+    }
+}
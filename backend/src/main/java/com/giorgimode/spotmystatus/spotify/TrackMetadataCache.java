@@ -0,0 +1,33 @@
+package com.giorgimode.spotmystatus.spotify;
+
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import com.giorgimode.spotmystatus.model.TrackMetadata;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of track metadata by Spotify item id. Users playing the same track share the same strings and precomputed titles
+ * instead of building their own on every poll.
+ */
+@Component
+public class TrackMetadataCache {
+
+    private final Cache<String, TrackMetadata> tracks;
+
+    public TrackMetadataCache(SpotMyStatusProperties spotMyStatusProperties) {
+        this.tracks = Caffeine.newBuilder()
+                              .maximumSize(spotMyStatusProperties.getTrackMetadataCacheSize())
+                              .build();
+    }
+
+    public SpotifyCurrentItem applySharedMetadata(SpotifyCurrentItem currentItem) {
+        // local files have no id, their metadata is not shared
+        TrackMetadata trackMetadata = currentItem.getTrackId() == null
+            ? TrackMetadata.from(currentItem)
+            : tracks.get(currentItem.getTrackId(), trackId -> TrackMetadata.from(currentItem));
+        currentItem.applyMetadata(trackMetadata);
+        return currentItem;
+    }
+}
@@ -54,6 +54,25 @@ public abstract class SpotMyStatusITBase {
 
         @Bean
         public ExecutorService cachedThreadPool() {
+            return createInlineExecutor();
+        }
+
+        @Bean
+        public ExecutorService commandExecutor() {
+            return createInlineExecutor();
+        }
+
+        @Bean
+        public ExecutorService eventExecutor() {
+            return createInlineExecutor();
+        }
+
+        @Bean
+        public ExecutorService statusWriteExecutor() {
+            return createInlineExecutor();
+        }
+
+        private ExecutorService createInlineExecutor() {
             ExecutorService executor = mock(ExecutorService.class);
             doAnswer(
                 (InvocationOnMock invocation) -> {
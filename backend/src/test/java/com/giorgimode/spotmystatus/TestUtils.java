@@ -1,5 +1,7 @@
 package com.giorgimode.spotmystatus;
 
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.CachedUser.CachedUserBuilder;
 import java.io.File;
 import java.nio.file.Files;
 import org.springframework.util.ResourceUtils;
@@ -10,4 +12,22 @@ public class TestUtils {
         File extractionFile = ResourceUtils.getFile("classpath:" + extractionResponseFile);
         return Files.readString(extractionFile.toPath());
     }
+
+    public static CachedUser createCachedUser() {
+        return cachedUserBuilder().build();
+    }
+
+    /**
+     * @return builder with all mandatory fields of the test user set
+     */
+    public static CachedUserBuilder cachedUserBuilder() {
+        return CachedUser.builder()
+                         .id("user123")
+                         .teamId("team123")
+                         .slackAccessToken("slack_access_token123")
+                         .slackBotToken("slack_bot_token123")
+                         .spotifyRefreshToken("spotify_refresh_token123")
+                         .spotifyAccessToken("spotify_access_token123")
+                         .timezoneOffsetSeconds(0);
+    }
 }
@@ -34,8 +34,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.util.UriComponentsBuilder;
 
 @AutoConfigureMockMvc
@@ -57,9 +59,12 @@ class AuthorizationControllerIT extends SpotMyStatusITBase {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
     @Test
     void shouldStartAuthorization() throws Exception {
-        String expectedLocation = "https://fake-slack.com/oauth/v2/authorize?scope=chat:write,commands"
+        String expectedLocation = "https://fake-slack.com/oauth/v2/authorize?scope=chat:write,commands,emoji:read"
             + "&user_scope=users:read,users.profile:read,users.profile:write"
             + "&redirect_uri=https://localhost/api/slack/redirect&client_id=slack_client123";
         mockMvc.perform(get("/api/start/"))
@@ -88,7 +93,23 @@ class AuthorizationControllerIT extends SpotMyStatusITBase {
         assertNotNull(createdUser.get().getCreatedAt());
     }
 
+    @Test
+    void shouldAuthorizeUserInSlackWithSignatureVerification() throws Exception {
+        // the redirect is opened by the user's browser, so it carries no Slack signature
+        MockMvc verifyingMockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext)
+                                                  .addFilters(new SlackRequestFilter("slack_signing_secret123", true))
+                                                  .build();
+        String newUserId = "new_user123";
+        authorizeInSlack(verifyingMockMvc, newUserId);
+
+        assertTrue(userRepository.existsById(newUserId));
+    }
+
     private MvcResult authorizeInSlack(String newUserId) throws Exception {
+        return authorizeInSlack(mockMvc, newUserId);
+    }
+
+    private MvcResult authorizeInSlack(MockMvc slackMockMvc, String newUserId) throws Exception {
         mockSlackAuth(newUserId);
         mockSlackUserInfo();
 
@@ -96,11 +117,11 @@ class AuthorizationControllerIT extends SpotMyStatusITBase {
             + "scope=user-read-playback-state"
             + "&response_type=code&redirect_uri=https://localhost/api/spotify/redirect"
             + "&state=*&client_id=spotify_client123";
-        return mockMvc.perform(get("/api/slack/redirect")
+        return slackMockMvc.perform(get("/api/slack/redirect")
             .queryParam("code", "slack_code_123"))
-                      .andExpect(status().is(302))
-                      .andExpect(redirectedUrlPattern(spotifyAuthLocation))
-                      .andReturn();
+                           .andExpect(status().is(302))
+                           .andExpect(redirectedUrlPattern(spotifyAuthLocation))
+                           .andReturn();
     }
 
     @Test
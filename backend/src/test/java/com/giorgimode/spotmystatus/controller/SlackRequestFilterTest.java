@@ -0,0 +1,187 @@
+package com.giorgimode.spotmystatus.controller;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.giorgimode.spotmystatus.TestUtils;
+import com.giorgimode.spotmystatus.model.SlackEvent;
+import com.giorgimode.spotmystatus.model.modals.InvocationModal;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+class SlackRequestFilterTest {
+
+    private static final String SIGNING_SECRET = "slack_signing_secret123";
+    private static final String EVENT_BODY = "{\"event_id\":\"Ev123\",\"event\":{\"type\":\"app_home_opened\",\"user\":\"user123\"}}";
+
+    private SlackRequestFilter slackRequestFilter;
+
+    @BeforeEach
+    void setUp() {
+        slackRequestFilter = new SlackRequestFilter(SIGNING_SECRET, true);
+    }
+
+    @Test
+    void shouldStoreParsedEventOfValidRequest() throws Exception {
+        MockHttpServletRequest request = createRequest("/api/slack/events", MediaType.APPLICATION_JSON_VALUE, EVENT_BODY);
+        sign(request, EVENT_BODY);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain filterChain = new MockFilterChain();
+
+        slackRequestFilter.doFilter(request, response, filterChain);
+
+        assertEquals(200, response.getStatus());
+        SlackEvent slackEvent = (SlackEvent) request.getAttribute(SlackRequestFilter.PAYLOAD_ATTRIBUTE);
+        assertNotNull(slackEvent);
+        assertEquals("Ev123", slackEvent.getEventId());
+        assertEquals("user123", slackEvent.getUser());
+        HttpServletRequest forwardedRequest = (HttpServletRequest) filterChain.getRequest();
+        assertNotNull(forwardedRequest);
+        assertEquals(EVENT_BODY, StreamUtils.copyToString(forwardedRequest.getInputStream(), UTF_8));
+    }
+
+    @Test
+    void shouldResolveFormParametersFromBody() throws Exception {
+        String body = "user_id=user123&text=pause&response_url=https%3A%2F%2Fhooks.slack.com%2Fcommands%2F123";
+        MockHttpServletRequest request = createRequest("/api/slack/command", MediaType.APPLICATION_FORM_URLENCODED_VALUE, body);
+        sign(request, body);
+        MockFilterChain filterChain = new MockFilterChain();
+
+        slackRequestFilter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        HttpServletRequest forwardedRequest = (HttpServletRequest) filterChain.getRequest();
+        assertNotNull(forwardedRequest);
+        assertEquals("user123", forwardedRequest.getParameter("user_id"));
+        assertEquals("pause", forwardedRequest.getParameter("text"));
+        assertEquals("https://hooks.slack.com/commands/123", forwardedRequest.getParameter("response_url"));
+    }
+
+    @Test
+    void shouldRejectEventWithInvalidSignature() throws Exception {
+        MockHttpServletRequest request = createRequest("/api/slack/events", MediaType.APPLICATION_JSON_VALUE, EVENT_BODY);
+        sign(request, EVENT_BODY + " ");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain filterChain = new MockFilterChain();
+
+        slackRequestFilter.doFilter(request, response, filterChain);
+
+        assertEquals(401, response.getStatus());
+        assertNull(filterChain.getRequest());
+    }
+
+    @Test
+    void shouldRejectOutdatedRequest() throws Exception {
+        MockHttpServletRequest request = createRequest("/api/slack/events", MediaType.APPLICATION_JSON_VALUE, EVENT_BODY);
+        request.addHeader("X-Slack-Request-Timestamp", "1609327004");
+        request.addHeader("X-Slack-Signature", signatureOf("1609327004", EVENT_BODY));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        slackRequestFilter.doFilter(request, response, new MockFilterChain());
+
+        assertEquals(401, response.getStatus());
+    }
+
+    @Test
+    void shouldIgnoreOtherEndpoints() throws Exception {
+        MockHttpServletRequest request = createRequest("/api/spotify/redirect", MediaType.APPLICATION_JSON_VALUE, "{}");
+        MockFilterChain filterChain = new MockFilterChain();
+
+        slackRequestFilter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertEquals(request, filterChain.getRequest());
+    }
+
+    @Test
+    void shouldIgnoreSlackRedirect() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/slack/redirect");
+        request.setQueryString("code=slack_code_123");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain filterChain = new MockFilterChain();
+
+        slackRequestFilter.doFilter(request, response, filterChain);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(request, filterChain.getRequest());
+    }
+
+    @Test
+    void shouldStoreParsedInteractionPayload() throws Exception {
+        String body = "payload=" + URLEncoder.encode(TestUtils.getFileContent("files/invocation_template.json"), UTF_8);
+        MockHttpServletRequest request = createRequest("/api/slack/interaction", MediaType.APPLICATION_FORM_URLENCODED_VALUE, body);
+        sign(request, body);
+
+        slackRequestFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        InvocationModal invocationModal = (InvocationModal) request.getAttribute(SlackRequestFilter.PAYLOAD_ATTRIBUTE);
+        assertNotNull(invocationModal);
+        assertEquals("block_actions", invocationModal.getType());
+        assertEquals("giorgi", invocationModal.getUser().getName());
+        assertEquals("emoji_input_block", invocationModal.getActions().get(0).getBlockId());
+    }
+
+    @Test
+    void shouldNotifyReadListenerOfBufferedBody() throws Exception {
+        MockHttpServletRequest request = createRequest("/api/slack/events", MediaType.APPLICATION_JSON_VALUE, EVENT_BODY);
+        sign(request, EVENT_BODY);
+        MockFilterChain filterChain = new MockFilterChain();
+        slackRequestFilter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        ServletInputStream inputStream = filterChain.getRequest().getInputStream();
+        ByteArrayOutputStream readBody = new ByteArrayOutputStream();
+        AtomicBoolean allDataRead = new AtomicBoolean();
+        inputStream.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                while (inputStream.isReady() && !inputStream.isFinished()) {
+                    readBody.write(inputStream.read());
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                allDataRead.set(true);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        });
+
+        assertEquals(EVENT_BODY, readBody.toString(UTF_8));
+        assertTrue(allDataRead.get());
+    }
+
+    private MockHttpServletRequest createRequest(String path, String contentType, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setContentType(contentType);
+        request.setContent(body.getBytes(UTF_8));
+        return request;
+    }
+
+    private void sign(MockHttpServletRequest request, String body) {
+        String timestamp = String.valueOf(System.currentTimeMillis() / 1000);
+        request.addHeader("X-Slack-Request-Timestamp", timestamp);
+        request.addHeader("X-Slack-Signature", signatureOf(timestamp, body));
+    }
+
+    @SuppressWarnings("UnstableApiUsage")
+    private String signatureOf(String timestamp, String body) {
+        return "v0=" + Hashing.hmacSha256(SIGNING_SECRET.getBytes(UTF_8)).hashString("v0:" + timestamp + ":" + body, UTF_8);
+    }
+}
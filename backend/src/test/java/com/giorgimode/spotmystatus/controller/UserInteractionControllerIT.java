@@ -27,7 +27,6 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import com.giorgimode.spotmystatus.SpotMyStatusITBase;
 import com.giorgimode.spotmystatus.SpotMyStatusITBase.SpotMyStatusTestConfig;
 import com.giorgimode.spotmystatus.TestUtils;
-import com.giorgimode.spotmystatus.command.CommandHandler;
 import com.giorgimode.spotmystatus.model.CachedUser;
 import com.giorgimode.spotmystatus.model.SlackEvent;
 import com.giorgimode.spotmystatus.model.SlackEvent.Event;
@@ -36,6 +35,7 @@ import com.giorgimode.spotmystatus.model.modals.InteractionModal;
 import com.giorgimode.spotmystatus.model.modals.InvocationModal;
 import com.giorgimode.spotmystatus.persistence.User;
 import com.giorgimode.spotmystatus.persistence.UserRepository;
+import com.giorgimode.spotmystatus.persistence.UserWriteBehindQueue;
 import com.giorgimode.spotmystatus.service.UserInteractionService;
 import com.giorgimode.spotmystatus.slack.SlackClient;
 import com.giorgimode.spotmystatus.slack.SlackStatusPayload;
@@ -53,14 +53,17 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.WebApplicationContext;
 
 @AutoConfigureMockMvc
 @Import(SpotMyStatusTestConfig.class)
 class UserInteractionControllerIT extends SpotMyStatusITBase {
 
+    private static final String RESPONSE_URL = "https://fake-slack.com/commands/response123";
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -71,7 +74,7 @@ class UserInteractionControllerIT extends SpotMyStatusITBase {
     private UserInteractionService userInteractionService;
 
     @Autowired
-    private CommandHandler commandHandler;
+    private WebApplicationContext webApplicationContext;
 
     @Autowired
     private UserRepository userRepository;
@@ -79,6 +82,9 @@ class UserInteractionControllerIT extends SpotMyStatusITBase {
     @Autowired
     private LoadingCache<String, CachedUser> userCache;
 
+    @Autowired
+    private UserWriteBehindQueue userWriteBehindQueue;
+
     @MockBean
     private SpotifyClient spotifyClient;
 
@@ -87,8 +93,10 @@ class UserInteractionControllerIT extends SpotMyStatusITBase {
 
     @Test
     void shouldHandleInvalidSignature() throws Exception {
-        ReflectionTestUtils.setField(commandHandler, "shouldVerifySignature", true);
-        mockMvc.perform(post("/api/slack/command")
+        MockMvc verifyingMockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext)
+                                                  .addFilters(new SlackRequestFilter("slack_signing_secret123", true))
+                                                  .build();
+        verifyingMockMvc.perform(post("/api/slack/command")
             .contentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE)
             .header("X-Slack-Request-Timestamp", "1609327004")
             .header("X-Slack-Signature", "v0=09bce6ebbc27ffecec7a351ce8efef94c83ba53cc3527384f589cb9daa0cd228_invalid")
@@ -97,7 +105,6 @@ class UserInteractionControllerIT extends SpotMyStatusITBase {
                .andExpect(status().isOk())
                .andExpect(content().string("Failed to validate signature. "
                    + "If the issue persists, please contact support at https://localhost/support"));
-        ReflectionTestUtils.setField(commandHandler, "shouldVerifySignature", false);
     }
 
     @Test
@@ -130,13 +137,17 @@ class UserInteractionControllerIT extends SpotMyStatusITBase {
             .header("X-Slack-Request-Timestamp", 1609327004L)
             .header("X-Slack-Signature", "dummy_signature")
             .queryParam("user_id", testUserId)
-            .queryParam("text", "pause"))
+            .queryParam("text", "pause")
+            .queryParam("response_url", RESPONSE_URL))
                .andExpect(status().isOk())
-               .andExpect(content().string("Status updates have been paused"));
+               .andExpect(content().string(is(emptyOrNullString())));
+
+        verify(slackClient).respond(RESPONSE_URL, "Status updates have been paused");
 
         verify(restTemplate, atLeastOnce()).postForEntity(eq("https://fake-slack.com/api/users.profile.set"), any(HttpEntity.class), eq(
             SlackStatusPayload.class));
-        assertTrue(user.isDisabled());
+        userWriteBehindQueue.flush();
+        assertTrue(userRepository.findById(testUserId).orElseThrow(AssertionFailedError::new).isDisabled());
         assertTrue(cachedUser.isDisabled());
     }
 
@@ -155,11 +166,15 @@ class UserInteractionControllerIT extends SpotMyStatusITBase {
             .header("X-Slack-Request-Timestamp", 1609327004L)
             .header("X-Slack-Signature", "dummy_signature")
             .queryParam("user_id", testUserId)
-            .queryParam("text", "play"))
+            .queryParam("text", "play")
+            .queryParam("response_url", RESPONSE_URL))
                .andExpect(status().isOk())
-               .andExpect(content().string("Status updates have been resumed"));
+               .andExpect(content().string(is(emptyOrNullString())));
 
-        assertFalse(user.isDisabled());
+        verify(slackClient).respond(RESPONSE_URL, "Status updates have been resumed");
+
+        userWriteBehindQueue.flush();
+        assertFalse(userRepository.findById(testUserId).orElseThrow(AssertionFailedError::new).isDisabled());
         assertFalse(cachedUser.isDisabled());
     }
 
@@ -175,9 +190,14 @@ class UserInteractionControllerIT extends SpotMyStatusITBase {
             .header("X-Slack-Request-Timestamp", 1609327004L)
             .header("X-Slack-Signature", "dummy_signature")
             .queryParam("user_id", testUserId)
-            .queryParam("text", "purge"))
+            .queryParam("text", "purge")
+            .queryParam("response_url", RESPONSE_URL))
                .andExpect(status().isOk())
-               .andExpect(content().string("User data has been purged. To sign up again, visit the <https://localhost|app home page>"));
+               .andExpect(content().string(is(emptyOrNullString())));
+
+        verify(slackClient).respond(RESPONSE_URL,
+            "User data has been purged. To sign up again, visit the <https://localhost|app home page>");
+        verify(restTemplate).postForEntity(eq(RESPONSE_URL), any(HttpEntity.class), eq(String.class));
 
         verify(restTemplate).postForEntity(eq("https://fake-slack.com/api/users.profile.set"), any(HttpEntity.class), eq(
             SlackStatusPayload.class));
@@ -271,6 +291,26 @@ class UserInteractionControllerIT extends SpotMyStatusITBase {
         verify(slackClient).notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), anyString());
     }
 
+    @Test
+    void shouldSkipRetriedEvent() throws Exception {
+        doReturn("ok").when(slackClient).notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), anyString());
+        SlackEvent slackEvent = new SlackEvent();
+        slackEvent.setEventId("Ev123");
+        Event slackInnerEvent = new Event();
+        slackInnerEvent.setType("app_home_opened");
+        slackInnerEvent.setUser("user123");
+        slackEvent.setEvent(slackInnerEvent);
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/slack/events")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .header("X-Slack-Retry-Num", i)
+                .content(OBJECT_MAPPER.writeValueAsBytes(slackEvent)))
+                   .andExpect(status().isOk());
+        }
+
+        verify(slackClient).notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), anyString());
+    }
+
     @Test
     void shouldHandleUserInteraction() throws Exception {
         doReturn("ok").when(slackClient).notifyUser(eq(SLACK_VIEW_UPDATE_URI), any(InteractionModal.class), anyString());
@@ -0,0 +1,39 @@
+package com.giorgimode.spotmystatus.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.giorgimode.spotmystatus.TestUtils;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class EmojiRotationTest {
+
+    @Test
+    void shouldWrapEmojisOnce() {
+        EmojiRotation emojiRotation = EmojiRotation.of(List.of("headphones", "notes"));
+        assertEquals(2, emojiRotation.size());
+        assertEquals("notes", emojiRotation.getName(1));
+        assertEquals(":notes:", emojiRotation.getWrapped(1));
+        assertSame(emojiRotation.getWrapped(0), emojiRotation.getWrapped(0));
+    }
+
+    @Test
+    void shouldShareRotationOfSameEmojis() {
+        EmojiRotation emojiRotation = EmojiRotation.of(List.of("headphones", "notes"));
+        assertSame(emojiRotation, EmojiRotation.of(new ArrayList<>(List.of("headphones", "notes"))));
+        assertSame(EmojiRotation.EMPTY, EmojiRotation.of(null));
+        assertTrue(EmojiRotation.of(List.of()).isEmpty());
+    }
+
+    @Test
+    void shouldRebuildRotationWithEmojis() {
+        CachedUser cachedUser = TestUtils.cachedUserBuilder()
+                                         .emojis("headphones,notes")
+                                         .build();
+        assertEquals(":headphones:", cachedUser.getEmojiRotation().getWrapped(0));
+        cachedUser.setEmojis(List.of("parrot"));
+        assertEquals(":parrot:", cachedUser.getEmojiRotation().getWrapped(0));
+    }
+}
@@ -0,0 +1,76 @@
+package com.giorgimode.spotmystatus.model;
+
+import static com.giorgimode.spotmystatus.helpers.SpotUtil.OBJECT_MAPPER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.giorgimode.spotmystatus.TestUtils;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SpotifyCurrentItemDeserializerTest {
+
+    @Test
+    void shouldParseTrack() throws IOException {
+        SpotifyCurrentItem currentItem = read("files/spotify_player_track.json");
+
+        assertTrue(currentItem.getIsPlaying());
+        assertEquals("track", currentItem.getType());
+        assertEquals(43125L, currentItem.getProgressMs());
+        assertEquals(1748000L, currentItem.getDurationMs());
+        assertEquals("The Glowing Man", currentItem.getTitle());
+        assertEquals("5X1UTRF2lsNeIvdHkmCC6K", currentItem.getTrackId());
+        assertEquals(List.of("Swans", "Jennifer Gira"), currentItem.getArtists());
+        assertEquals("https://open.spotify.com/track/5X1UTRF2lsNeIvdHkmCC6K", currentItem.getTrackUrl());
+        assertEquals("https://i.scdn.co/image/ab67616d0000b273large", currentItem.getImageUrl());
+        assertEquals("macbookDeviceId123", currentItem.getDevice().getId());
+        assertEquals("MacBook Pro", currentItem.getDevice().getName());
+        assertFalse(currentItem.getDevice().isPrivateSession());
+    }
+
+    @Test
+    void shouldParseEpisode() throws IOException {
+        SpotifyCurrentItem currentItem = read("files/spotify_player_episode.json");
+
+        assertFalse(currentItem.getIsPlaying());
+        assertEquals("episode", currentItem.getType());
+        assertEquals("Episode 42", currentItem.getTitle());
+        assertEquals(List.of("Drone Talk"), currentItem.getArtists());
+        assertEquals("https://i.scdn.co/image/episode_large", currentItem.getImageUrl());
+        assertTrue(currentItem.getDevice().isPrivateSession());
+    }
+
+    @Test
+    void shouldParseMissingItem() throws IOException {
+        SpotifyCurrentItem currentItem = OBJECT_MAPPER.readValue(
+            "{\"device\":{\"id\":\"device123\",\"is_private_session\":false},\"item\":null,\"is_playing\":true,\"progress_ms\":null}",
+            SpotifyCurrentItem.class);
+
+        assertTrue(currentItem.getIsPlaying());
+        assertNull(currentItem.getTitle());
+        assertEquals(0L, currentItem.getProgressMs());
+        assertEquals("device123", currentItem.getDevice().getId());
+    }
+
+    @Test
+    void shouldParseFirstQueueItem() throws IOException {
+        SpotifyQueue spotifyQueue = OBJECT_MAPPER.readValue(
+            "{\"currently_playing\":{\"id\":\"track123\",\"type\":\"track\"},\"queue\":["
+                + "{\"id\":\"track456\",\"name\":\"Cloud of Forgetting\",\"type\":\"track\",\"duration_ms\":723000,"
+                + "\"artists\":[{\"name\":\"Swans\"}]},{\"id\":\"track789\",\"name\":\"Frankie M\",\"type\":\"track\"}]}",
+            SpotifyQueue.class);
+
+        SpotifyCurrentItem nextItem = spotifyQueue.getNextItem();
+        assertEquals("track456", nextItem.getTrackId());
+        assertEquals("track", nextItem.getType());
+        assertEquals("Cloud of Forgetting", nextItem.getTitle());
+        assertEquals(723000L, nextItem.getDurationMs());
+        assertEquals(List.of("Swans"), nextItem.getArtists());
+    }
+
+    private SpotifyCurrentItem read(String file) throws IOException {
+        return OBJECT_MAPPER.readValue(TestUtils.getFileContent(file), SpotifyCurrentItem.class);
+    }
+}
@@ -0,0 +1,85 @@
+package com.giorgimode.spotmystatus.persistence;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toSet;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import com.giorgimode.spotmystatus.SpotMyStatusITBase;
+import com.giorgimode.spotmystatus.SpotMyStatusITBase.SpotMyStatusTestConfig;
+import com.giorgimode.spotmystatus.spotify.SpotifyClient;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+
+@Import(SpotMyStatusTestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_CLASS)
+class TeamIndexIT extends SpotMyStatusITBase {
+
+    private static final String TEST_USER_ID = "user123";
+    private static final String NEW_USER_ID = "user456";
+    private static final String TEST_TEAM_ID = "team_123";
+
+    @Autowired
+    private TeamIndex teamIndex;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SpotifyClient spotifyClient;
+
+    @AfterEach
+    void tearDown() {
+        // the database changes are rolled back, the in-memory index has to be restored manually
+        teamIndex.remove(NEW_USER_ID);
+        teamIndex.add(TEST_TEAM_ID, TEST_USER_ID);
+    }
+
+    @Test
+    void shouldMatchRepositoryAfterWarmUp() {
+        assertConsistentWithRepository();
+        assertEquals(Set.of(TEST_USER_ID), teamIndex.getTeammateIds(TEST_TEAM_ID));
+    }
+
+    @Test
+    void shouldStayConsistentOnSignupAndInvalidation() {
+        spotifyClient.invalidateUser(TEST_USER_ID);
+        assertConsistentWithRepository();
+        assertEquals(Set.of(), teamIndex.getTeammateIds(TEST_TEAM_ID));
+
+        UUID state = UUID.randomUUID();
+        userRepository.save(createUnauthorizedUser(state));
+        assertConsistentWithRepository();
+
+        spotifyClient.updateAuthToken("spotify_code123", state);
+        assertConsistentWithRepository();
+        assertEquals(Set.of(NEW_USER_ID), teamIndex.getTeammateIds(TEST_TEAM_ID));
+    }
+
+    private void assertConsistentWithRepository() {
+        Map<String, Set<String>> authorizedUsersByTeam = userRepository.findAll()
+                                                                       .stream()
+                                                                       .filter(user -> isNotBlank(user.getSpotifyRefreshToken()))
+                                                                       .collect(groupingBy(User::getTeamId, mapping(User::getId, toSet())));
+        assertEquals(authorizedUsersByTeam.getOrDefault(TEST_TEAM_ID, Set.of()), teamIndex.getTeammateIds(TEST_TEAM_ID));
+        authorizedUsersByTeam.forEach((teamId, userIds) -> assertEquals(userIds, teamIndex.getTeammateIds(teamId)));
+    }
+
+    private User createUnauthorizedUser(UUID state) {
+        User user = new User();
+        user.setId(NEW_USER_ID);
+        user.setTeamId(TEST_TEAM_ID);
+        user.setSlackAccessToken("slack_access_token456");
+        user.setSlackBotToken("slack_bot_token123");
+        user.setTimezoneOffsetSeconds(0);
+        user.setState(state);
+        return user;
+    }
+}
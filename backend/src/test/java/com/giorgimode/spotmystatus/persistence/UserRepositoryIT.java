@@ -0,0 +1,104 @@
+package com.giorgimode.spotmystatus.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.giorgimode.spotmystatus.SpotMyStatusITBase;
+import com.giorgimode.spotmystatus.SpotMyStatusITBase.SpotMyStatusTestConfig;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+@Import(SpotMyStatusTestConfig.class)
+class UserRepositoryIT extends SpotMyStatusITBase {
+
+    private static final String TEST_USER_ID = "user123";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void targetedUpdateShouldNotLoadUser() {
+        long statements = countStatements(() -> userRepository.updateDisabled(List.of(TEST_USER_ID), true));
+
+        assertEquals(1, statements);
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertTrue(reloadUser().isDisabled());
+    }
+
+    @Test
+    void loadAndSaveShouldNeedTwoStatements() {
+        long statements = countStatements(() -> {
+            User user = userRepository.findById(TEST_USER_ID).orElseThrow();
+            user.setDisabled(true);
+            userRepository.saveAndFlush(user);
+        });
+
+        assertEquals(2, statements);
+        assertEquals(1, statistics.getEntityLoadCount());
+        assertTrue(reloadUser().isDisabled());
+    }
+
+    @Test
+    void targetedUpdateShouldShareStatementBetweenUsers() {
+        long statements = countStatements(() -> userRepository.updateEmojis(List.of(TEST_USER_ID, "unknown_user"), "guitar"));
+
+        assertEquals(1, statements);
+        assertEquals("guitar", reloadUser().getEmojis());
+    }
+
+    @Test
+    void shouldWalkAuthorizedUsersPageByPage() {
+        userRepository.save(createUser("user456", "spotify_refresh_token456"));
+        userRepository.save(createUser("user789", "spotify_refresh_token789"));
+        userRepository.save(createUser("user000", null));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<String> userIds = new ArrayList<>();
+        statistics.clear();
+        userRepository.forEachAuthorizedUser(2, user -> userIds.add(user.getId()));
+
+        assertEquals(List.of(TEST_USER_ID, "user456", "user789"), userIds);
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    private User createUser(String userId, String spotifyRefreshToken) {
+        User user = new User();
+        user.setId(userId);
+        user.setTeamId("team_123");
+        user.setSlackAccessToken("slack_access_token_" + userId);
+        user.setSlackBotToken("slack_bot_token123");
+        user.setSpotifyRefreshToken(spotifyRefreshToken);
+        user.setTimezoneOffsetSeconds(0);
+        return user;
+    }
+
+    private long countStatements(Runnable action) {
+        entityManager.clear();
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User reloadUser() {
+        entityManager.clear();
+        return userRepository.findById(TEST_USER_ID).orElseThrow();
+    }
+}
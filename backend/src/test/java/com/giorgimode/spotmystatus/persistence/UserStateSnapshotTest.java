@@ -0,0 +1,99 @@
+package com.giorgimode.spotmystatus.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import com.giorgimode.spotmystatus.TestUtils;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UserStateSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path snapshotPath;
+    private UserStateSnapshot userStateSnapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshotPath = tempDir.resolve("users.snapshot");
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setSnapshotPath(snapshotPath.toString());
+        userStateSnapshot = new UserStateSnapshot(spotMyStatusProperties);
+    }
+
+    @Test
+    void shouldRestoreWrittenState() throws IOException {
+        CachedUser cachedUser = TestUtils.createCachedUser();
+        cachedUser.setSlackStatus("Swans - The Glowing Man");
+        cachedUser.setCurrentEmoji(":notes:");
+        cachedUser.setCleaned(false);
+        cachedUser.setManualStatus(true);
+        userStateSnapshot.write(List.of(cachedUser));
+
+        Map<String, UserStateSnapshot.Entry> snapshot = userStateSnapshot.read();
+        UserStateSnapshot.Entry entry = snapshot.get("user123");
+        assertNotNull(entry);
+        assertTrue(entry.matches(createUser("spotify_refresh_token123")));
+        assertFalse(entry.matches(createUser("new_spotify_refresh_token")));
+        assertEquals("spotify_access_token123", entry.getSpotifyAccessToken());
+        assertEquals(cachedUser.getSpotifyAccessTokenIssuedAt(), entry.getSpotifyAccessTokenIssuedAt());
+
+        CachedUser restoredUser = TestUtils.createCachedUser();
+        entry.applyTo(restoredUser);
+        assertEquals("Swans - The Glowing Man", restoredUser.getSlackStatus());
+        assertEquals(":notes:", restoredUser.getCurrentEmoji());
+        assertFalse(restoredUser.isCleaned());
+        assertTrue(restoredUser.isManualStatus());
+    }
+
+    @Test
+    void shouldDropExpiredAccessToken() throws IOException {
+        CachedUser cachedUser = TestUtils.createCachedUser();
+        cachedUser.setSpotifyAccessTokenIssuedAt(System.currentTimeMillis() - Duration.ofHours(1).toMillis());
+        userStateSnapshot.write(List.of(cachedUser));
+        assertNull(userStateSnapshot.read().get("user123").getSpotifyAccessToken());
+    }
+
+    @Test
+    void shouldBeReadableByOwnerOnly() throws IOException {
+        assumeTrue(snapshotPath.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        userStateSnapshot.write(List.of(TestUtils.createCachedUser()));
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(snapshotPath));
+    }
+
+    @Test
+    void shouldIgnoreCorruptSnapshot() throws IOException {
+        userStateSnapshot.write(List.of(TestUtils.createCachedUser()));
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+        bytes[bytes.length / 2] ^= 0x7F;
+        Files.write(snapshotPath, bytes);
+        assertTrue(userStateSnapshot.read().isEmpty());
+    }
+
+    @Test
+    void shouldIgnoreMissingSnapshot() {
+        assertTrue(userStateSnapshot.read().isEmpty());
+    }
+
+    private User createUser(String spotifyRefreshToken) {
+        User user = new User();
+        user.setId("user123");
+        user.setSpotifyRefreshToken(spotifyRefreshToken);
+        return user;
+    }
+}
@@ -0,0 +1,65 @@
+package com.giorgimode.spotmystatus.persistence;
+
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class UserWriteBehindQueueTest {
+
+    private static final String TEST_USER_ID = "user123";
+    private static final String OTHER_USER_ID = "user456";
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserWriteBehindQueue userWriteBehindQueue;
+
+    @BeforeEach
+    void setUp() {
+        userWriteBehindQueue = new UserWriteBehindQueue(userRepository, transactionManager, 50);
+    }
+
+    @Test
+    void shouldCoalesceUpdatesOfSameUser() {
+        userWriteBehindQueue.update(TEST_USER_ID, userUpdate -> userUpdate.disabled(true).spotifyItems("track"));
+        userWriteBehindQueue.update(TEST_USER_ID, userUpdate -> userUpdate.disabled(false).syncHours(700, 2000));
+        userWriteBehindQueue.flush();
+
+        verify(userRepository).updateDisabled(List.of(TEST_USER_ID), false);
+        verify(userRepository).updateSpotifyItems(List.of(TEST_USER_ID), "track");
+        verify(userRepository).updateSyncHours(List.of(TEST_USER_ID), 700, 2000);
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    void shouldShareStatementBetweenUsersWithSameValue() {
+        userWriteBehindQueue.update(TEST_USER_ID, userUpdate -> userUpdate.disabled(true));
+        userWriteBehindQueue.update(OTHER_USER_ID, userUpdate -> userUpdate.disabled(true));
+        userWriteBehindQueue.flush();
+
+        verify(userRepository).updateDisabled(argThat(userIds -> userIds.containsAll(Set.of(TEST_USER_ID, OTHER_USER_ID))), eq(true));
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    void shouldDropDiscardedUpdates() {
+        userWriteBehindQueue.update(TEST_USER_ID, userUpdate -> userUpdate.disabled(true));
+        userWriteBehindQueue.discard(TEST_USER_ID);
+        userWriteBehindQueue.flush();
+        verifyNoInteractions(userRepository);
+    }
+}
@@ -0,0 +1,83 @@
+package com.giorgimode.spotmystatus.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import com.giorgimode.spotmystatus.TestUtils;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent.Reason;
+import com.giorgimode.spotmystatus.spotify.SpotifyDeviceInventory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LiveStateCleanerTest {
+
+    private TeamTrackBoard teamTrackBoard;
+    private SpotifyDeviceInventory spotifyDeviceInventory;
+    private NextTrackPrerenderer nextTrackPrerenderer;
+    private StatusWriteStage statusWriteStage;
+    private WorkingHoursWheel workingHoursWheel;
+    private LiveStateCleaner liveStateCleaner;
+    private CachedUser cachedUser;
+
+    @BeforeEach
+    void setUp() {
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setTrackBoardTtl(30000L);
+        teamTrackBoard = new TeamTrackBoard(spotMyStatusProperties);
+        spotifyDeviceInventory = mock(SpotifyDeviceInventory.class);
+        nextTrackPrerenderer = mock(NextTrackPrerenderer.class);
+        statusWriteStage = mock(StatusWriteStage.class);
+        workingHoursWheel = mock(WorkingHoursWheel.class);
+        liveStateCleaner = new LiveStateCleaner(teamTrackBoard, spotifyDeviceInventory, nextTrackPrerenderer, statusWriteStage,
+            workingHoursWheel);
+        cachedUser = TestUtils.createCachedUser();
+        teamTrackBoard.publish(cachedUser, new SpotifyCurrentItem());
+    }
+
+    @Test
+    void shouldRemoveReleasedUserFromBoard() {
+        liveStateCleaner.release(cachedUser);
+
+        assertTrue(teamTrackBoard.getLiveTracks("team123").isEmpty());
+        verify(nextTrackPrerenderer).cancel(cachedUser);
+    }
+
+    @Test
+    void shouldRemoveInvalidatedUserFromBoard() {
+        liveStateCleaner.onUserReleased(new UserReleasedEvent("user123", "team123", Reason.INVALIDATED));
+
+        assertTrue(teamTrackBoard.getLiveTracks("team123").isEmpty());
+        verify(spotifyDeviceInventory).remove("user123");
+        verify(workingHoursWheel).remove("user123");
+        verify(nextTrackPrerenderer).cancel("user123");
+        verify(statusWriteStage).discard("user123");
+    }
+
+    @Test
+    void shouldKeepDevicesOfPausedUser() {
+        liveStateCleaner.onUserReleased(new UserReleasedEvent("user123", "team123", Reason.PAUSED));
+
+        assertTrue(teamTrackBoard.getLiveTracks("team123").isEmpty());
+        verify(spotifyDeviceInventory, never()).remove("user123");
+        verify(workingHoursWheel, never()).remove("user123");
+        verify(nextTrackPrerenderer).cancel("user123");
+        verify(statusWriteStage).discard("user123");
+    }
+
+    @Test
+    void shouldLookUpUserOfUnknownTeam() {
+        CachedUser teammate = TestUtils.cachedUserBuilder().id("user456").build();
+        teamTrackBoard.publish(teammate, new SpotifyCurrentItem());
+
+        liveStateCleaner.onUserReleased(new UserReleasedEvent("user123", null, Reason.PURGED));
+
+        assertEquals(1, teamTrackBoard.getLiveTracks("team123").size());
+        assertTrue(teamTrackBoard.getLiveTracks("team123").containsKey("user456"));
+    }
+}
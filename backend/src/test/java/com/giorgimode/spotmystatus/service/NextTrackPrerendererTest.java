@@ -0,0 +1,118 @@
+package com.giorgimode.spotmystatus.service;
+
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import com.giorgimode.spotmystatus.TestUtils;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import com.giorgimode.spotmystatus.spotify.SpotifyClient;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class NextTrackPrerendererTest {
+
+    @Mock
+    private SpotifyClient spotifyClient;
+
+    @Mock
+    private StatusWriteStage statusWriteStage;
+
+    @Mock
+    private Consumer<CachedUser> verifier;
+
+    private NextTrackPrerenderer nextTrackPrerenderer;
+    private LoadingCache<String, CachedUser> userCache;
+    private CachedUser cachedUser;
+    private SpotifyCurrentItem nextItem;
+
+    @BeforeEach
+    void setUp() {
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setNextTrackPrerenderEnabled(true);
+        userCache = Caffeine.newBuilder().build(key -> null);
+        nextTrackPrerenderer = new NextTrackPrerenderer(spotifyClient, statusWriteStage, userCache, spotMyStatusProperties,
+            new SimpleMeterRegistry());
+        cachedUser = TestUtils.createCachedUser();
+        userCache.put(cachedUser.getId(), cachedUser);
+        nextItem = createItem("track456", 723000L, 0L);
+        when(spotifyClient.getNextItem(cachedUser)).thenReturn(Optional.of(nextItem));
+    }
+
+    @AfterEach
+    void tearDown() {
+        nextTrackPrerenderer.onDestroy();
+    }
+
+    @Test
+    void shouldFlipStatusAtEndOfTrack() {
+        nextTrackPrerenderer.prerender(cachedUser, createItem("track123", 300000L, 299800L), verifier);
+        nextTrackPrerenderer.prerender(cachedUser, createItem("track123", 300000L, 299900L), verifier);
+
+        verify(statusWriteStage, timeout(1000)).submitUpdate(cachedUser, nextItem);
+        verify(verifier, timeout(3000)).accept(cachedUser);
+        // the queue is read only once per track
+        verify(spotifyClient).getNextItem(cachedUser);
+    }
+
+    @Test
+    void shouldPostponeVerificationWhileFlipIsWritten() {
+        when(statusWriteStage.isWriting(cachedUser.getId())).thenReturn(true, false);
+        nextTrackPrerenderer.prerender(cachedUser, createItem("track123", 300000L, 299800L), verifier);
+
+        verify(statusWriteStage, timeout(1000)).submitUpdate(cachedUser, nextItem);
+        verify(verifier, after(2000).never()).accept(cachedUser);
+        verify(verifier, timeout(3000)).accept(cachedUser);
+        verify(statusWriteStage, times(2)).isWriting(cachedUser.getId());
+    }
+
+    @Test
+    void shouldDropFlipWhenPlaybackStops() {
+        nextTrackPrerenderer.prerender(cachedUser, createItem("track123", 300000L, 299700L), verifier);
+        nextTrackPrerenderer.cancel(cachedUser);
+
+        verify(statusWriteStage, after(600).never()).submitUpdate(cachedUser, nextItem);
+    }
+
+    @Test
+    void shouldNotFlipStatusOfPausedUser() {
+        nextTrackPrerenderer.prerender(cachedUser, createItem("track123", 300000L, 299700L), verifier);
+        cachedUser.setDisabled(true);
+
+        verify(statusWriteStage, after(600).never()).submitUpdate(cachedUser, nextItem);
+        verifyNoInteractions(verifier);
+    }
+
+    @Test
+    void shouldNotFlipStatusOfInvalidatedUser() {
+        nextTrackPrerenderer.prerender(cachedUser, createItem("track123", 300000L, 299700L), verifier);
+        userCache.invalidate(cachedUser.getId());
+
+        verify(statusWriteStage, after(600).never()).submitUpdate(cachedUser, nextItem);
+        verifyNoInteractions(verifier);
+    }
+
+    private SpotifyCurrentItem createItem(String trackId, Long durationMs, Long progressMs) {
+        SpotifyCurrentItem currentItem = new SpotifyCurrentItem();
+        currentItem.setTrackId(trackId);
+        currentItem.setIsPlaying(true);
+        currentItem.setDurationMs(durationMs);
+        currentItem.setProgressMs(progressMs);
+        return currentItem;
+    }
+}
@@ -0,0 +1,109 @@
+package com.giorgimode.spotmystatus.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.SlackEvent;
+import com.giorgimode.spotmystatus.model.SlackEvent.Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SlackEventProcessorTest {
+
+    private static final String TEST_USER_ID = "user123";
+
+    @Mock
+    private UserInteractionService userInteractionService;
+
+    private final List<Runnable> queuedTasks = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ExecutorService eventExecutor;
+    private SlackEventProcessor slackEventProcessor;
+
+    @BeforeEach
+    void setUp() {
+        eventExecutor = Mockito.mock(ExecutorService.class);
+        Mockito.lenient().doAnswer(invocation -> queuedTasks.add(invocation.getArgument(0))).when(eventExecutor).execute(any());
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setEventDedupeTtl(60000L);
+        slackEventProcessor = new SlackEventProcessor(userInteractionService, spotMyStatusProperties, eventExecutor, meterRegistry);
+    }
+
+    @Test
+    void shouldSkipDuplicateEvents() {
+        slackEventProcessor.submit(createHomeOpenedEvent("Ev1"));
+        runQueuedTasks();
+        slackEventProcessor.submit(createHomeOpenedEvent("Ev1"));
+        runQueuedTasks();
+
+        verify(userInteractionService).updateHomeTab(TEST_USER_ID);
+        assertEquals(1, countOf("duplicate"));
+    }
+
+    @Test
+    void shouldDebounceQueuedHomeTabUpdates() {
+        slackEventProcessor.submit(createHomeOpenedEvent("Ev1"));
+        slackEventProcessor.submit(createHomeOpenedEvent("Ev2"));
+        runQueuedTasks();
+        verify(userInteractionService).updateHomeTab(TEST_USER_ID);
+        assertEquals(1, countOf("debounced"));
+
+        slackEventProcessor.submit(createHomeOpenedEvent("Ev3"));
+        runQueuedTasks();
+        verify(userInteractionService, times(2)).updateHomeTab(TEST_USER_ID);
+    }
+
+    @Test
+    void shouldDropEventsWhenQueueIsFull() {
+        doThrow(new RejectedExecutionException()).when(eventExecutor).execute(any());
+        slackEventProcessor.submit(createHomeOpenedEvent("Ev1"));
+        assertEquals(1, countOf("dropped"));
+        verifyNoInteractions(userInteractionService);
+    }
+
+    @Test
+    void shouldAcceptRetryOfDroppedEvent() {
+        doThrow(new RejectedExecutionException()).doAnswer(invocation -> queuedTasks.add(invocation.getArgument(0)))
+                                                 .when(eventExecutor).execute(any());
+        slackEventProcessor.submit(createHomeOpenedEvent("Ev1"));
+        slackEventProcessor.submit(createHomeOpenedEvent("Ev1"));
+        runQueuedTasks();
+
+        verify(userInteractionService).updateHomeTab(TEST_USER_ID);
+        assertEquals(0, countOf("duplicate"));
+    }
+
+    private void runQueuedTasks() {
+        List<Runnable> tasks = new ArrayList<>(queuedTasks);
+        queuedTasks.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    private double countOf(String result) {
+        return meterRegistry.counter("spotmystatus.slack_events", "result", result).count();
+    }
+
+    private SlackEvent createHomeOpenedEvent(String eventId) {
+        SlackEvent slackEvent = new SlackEvent();
+        slackEvent.setEventId(eventId);
+        Event event = new Event();
+        event.setType("app_home_opened");
+        event.setUser(TEST_USER_ID);
+        slackEvent.setEvent(event);
+        return slackEvent;
+    }
+}
@@ -1,11 +1,17 @@
 package com.giorgimode.spotmystatus.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -17,12 +23,17 @@ import com.giorgimode.spotmystatus.model.SpotifyDevice;
 import com.giorgimode.spotmystatus.model.SpotifyItem;
 import com.giorgimode.spotmystatus.slack.SlackClient;
 import com.giorgimode.spotmystatus.spotify.SpotifyClient;
+import com.giorgimode.spotmystatus.spotify.SpotifyDeviceInventory;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -42,9 +53,16 @@ class StatusUpdateSchedulerTest {
 
     @Mock
     private SpotifyClient spotifyClient;
+
+    @Mock
+    private NextTrackPrerenderer nextTrackPrerenderer;
     private LoadingCache<String, CachedUser> userCache;
     private SpotMyStatusProperties spotMyStatusProperties;
     private StatusUpdateScheduler statusUpdateScheduler;
+    private TeamTrackBoard teamTrackBoard;
+    private LiveStateCleaner liveStateCleaner;
+    private SimpleMeterRegistry meterRegistry;
+    private WorkingHoursWheel workingHoursWheel;
 
     private CachedUser cachedUser;
 
@@ -52,17 +70,28 @@ class StatusUpdateSchedulerTest {
     void setUp() {
         spotMyStatusProperties = new SpotMyStatusProperties();
         spotMyStatusProperties.setTimeout(1000);
+        spotMyStatusProperties.setTrackBoardTtl(30000L);
+        spotMyStatusProperties.setStatusWriteMinInterval(0L);
+        teamTrackBoard = new TeamTrackBoard(spotMyStatusProperties);
+        meterRegistry = new SimpleMeterRegistry();
         userCache = Caffeine.newBuilder()
                             .maximumSize(10_000)
                             .build(key -> createCachedUser());
-        StatusUpdateScheduler realScheduler = new StatusUpdateScheduler(userCache, slackClient, spotifyClient, spotMyStatusProperties, executor);
+        workingHoursWheel = new WorkingHoursWheel(userCache, spotMyStatusProperties);
+        liveStateCleaner = new LiveStateCleaner(teamTrackBoard, mock(SpotifyDeviceInventory.class), nextTrackPrerenderer,
+            mock(StatusWriteStage.class), workingHoursWheel);
+        StatusUpdateScheduler realScheduler = new StatusUpdateScheduler(userCache, slackClient, spotifyClient, spotMyStatusProperties,
+            executor, teamTrackBoard, liveStateCleaner, new StatusWriteStage(slackClient, executor, spotMyStatusProperties, meterRegistry),
+            nextTrackPrerenderer, workingHoursWheel, meterRegistry);
         statusUpdateScheduler = spy(realScheduler);
         cachedUser = createCachedUser();
     }
 
     @Test
     void schedulerShouldHandleBadCache() {
-        statusUpdateScheduler = new StatusUpdateScheduler(null, slackClient, spotifyClient, spotMyStatusProperties, executor);
+        statusUpdateScheduler = new StatusUpdateScheduler(null, slackClient, spotifyClient, spotMyStatusProperties, executor,
+            teamTrackBoard, liveStateCleaner, new StatusWriteStage(slackClient, executor, spotMyStatusProperties, meterRegistry),
+            nextTrackPrerenderer, workingHoursWheel, meterRegistry);
         statusUpdateScheduler.scheduleFixedDelayTask();
         verifyNoInteractions(slackClient);
         verifyNoInteractions(spotifyClient);
@@ -103,6 +132,43 @@ class StatusUpdateSchedulerTest {
         verifyNoInteractions(spotifyClient);
     }
 
+    @Test
+    void schedulerShouldSkipUserOutsideWorkingHours() {
+        spotMyStatusProperties.setWorkingHoursEnabled(true);
+        spotMyStatusProperties.setExpirationOnlyEnabled(true);
+        int hour = OffsetDateTime.now(ZoneOffset.UTC).getHour();
+        cachedUser.setSyncStartHour((hour + 2) % 24 * 100);
+        cachedUser.setSyncEndHour((hour + 3) % 24 * 100);
+        cachedUser.setCleaned(false);
+        statusUpdateScheduler.scheduleFixedDelayTask();
+        statusUpdateScheduler.scheduleFixedDelayTask();
+        // the status is released once, afterwards the user is not polled until the working hours start
+        verify(slackClient).releaseStatus(cachedUser);
+        verifyNoMoreInteractions(slackClient);
+        verifyNoInteractions(spotifyClient);
+    }
+
+    @Test
+    void schedulerShouldWaitForActiveWrite() throws InterruptedException {
+        doNothing().when(statusUpdateScheduler).sleep(anyLong());
+        mockExecutor();
+        when(slackClient.isUserLive(cachedUser)).thenReturn(false);
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch writeDone = new CountDownLatch(1);
+        Thread writer = new Thread(() -> cachedUser.runExclusively(() -> {
+            writeStarted.countDown();
+            Uninterruptibles.awaitUninterruptibly(writeDone);
+        }));
+        writer.start();
+        writeStarted.await();
+        Thread poller = new Thread(statusUpdateScheduler::scheduleFixedDelayTask);
+        poller.start();
+        verify(slackClient, after(200).never()).isUserLive(cachedUser);
+        writeDone.countDown();
+        poller.join(2000);
+        verify(slackClient).isUserLive(cachedUser);
+    }
+
     @Test
     void schedulerShouldSkipStatusUpdateWhenSpotifyIsNotPlaying() throws InterruptedException {
         doNothing().when(statusUpdateScheduler).sleep(anyLong());
@@ -118,6 +184,7 @@ class StatusUpdateSchedulerTest {
         verifyNoMoreInteractions(slackClient);
         verifyNoMoreInteractions(spotifyClient);
         verifyNoMoreInteractions(currentItem);
+        assertTrue(teamTrackBoard.getLiveTracks("teamId").isEmpty());
     }
 
 
@@ -134,9 +201,82 @@ class StatusUpdateSchedulerTest {
         when(spotifyClient.getCurrentLiveTrack(cachedUser)).thenReturn(Optional.of(currentItem));
         statusUpdateScheduler.scheduleFixedDelayTask();
         verify(slackClient).updateAndPersistStatus(cachedUser, currentItem);
+        verify(nextTrackPrerenderer).prerender(eq(cachedUser), eq(currentItem), any());
         verifyNoMoreInteractions(slackClient);
         verifyNoMoreInteractions(spotifyClient);
         verifyNoMoreInteractions(currentItem);
+        assertEquals(Map.of("user1", currentItem), teamTrackBoard.getLiveTracks("teamId"));
+    }
+
+    @Test
+    void schedulerShouldNotHandOverUnchangedStatus() throws InterruptedException {
+        doNothing().when(statusUpdateScheduler).sleep(anyLong());
+        mockExecutor();
+        cachedUser.setStatusTrackId("track123");
+        SpotifyCurrentItem currentItem = new SpotifyCurrentItem();
+        currentItem.setTrackId("track123");
+        currentItem.setIsPlaying(true);
+        when(slackClient.isUserLive(cachedUser)).thenReturn(true);
+        when(spotifyClient.getCurrentLiveTrack(cachedUser)).thenReturn(Optional.of(currentItem));
+        statusUpdateScheduler.scheduleFixedDelayTask();
+        verify(slackClient).updateAndPersistStatus(cachedUser, currentItem);
+        assertEquals(1, meterRegistry.counter("spotmystatus.poll.stage.diff", "result", "unchanged").count());
+        assertEquals(0, meterRegistry.timer("spotmystatus.poll.stage", "stage", "write").count());
+    }
+
+    @Test
+    void schedulerShouldSupersedeStatusChangesWithinMinWriteInterval() throws InterruptedException {
+        spotMyStatusProperties.setStatusWriteMinInterval(500L);
+        statusUpdateScheduler = spy(new StatusUpdateScheduler(userCache, slackClient, spotifyClient, spotMyStatusProperties, executor,
+            teamTrackBoard, liveStateCleaner, new StatusWriteStage(slackClient, executor, spotMyStatusProperties, meterRegistry),
+            nextTrackPrerenderer, workingHoursWheel, meterRegistry));
+        doNothing().when(statusUpdateScheduler).sleep(anyLong());
+        mockExecutor();
+        SpotifyCurrentItem firstTrack = createPlayingTrack("track123");
+        SpotifyCurrentItem secondTrack = createPlayingTrack("track456");
+        SpotifyCurrentItem thirdTrack = createPlayingTrack("track789");
+        when(slackClient.isUserLive(cachedUser)).thenReturn(true);
+        when(spotifyClient.getCurrentLiveTrack(cachedUser)).thenReturn(Optional.of(firstTrack), Optional.of(secondTrack),
+            Optional.of(thirdTrack));
+        statusUpdateScheduler.scheduleFixedDelayTask();
+        statusUpdateScheduler.scheduleFixedDelayTask();
+        statusUpdateScheduler.scheduleFixedDelayTask();
+
+        verify(slackClient).updateAndPersistStatus(cachedUser, firstTrack);
+        verify(slackClient, timeout(2000)).updateAndPersistStatus(cachedUser, thirdTrack);
+        verify(slackClient, never()).updateAndPersistStatus(cachedUser, secondTrack);
+        assertEquals(1, meterRegistry.counter("spotmystatus.poll.stage.skipped", "stage", "write", "reason", "superseded").count());
+    }
+
+    @Test
+    void schedulerShouldLeaveStatusToExpire() throws InterruptedException {
+        doNothing().when(statusUpdateScheduler).sleep(anyLong());
+        mockExecutor();
+        spotMyStatusProperties.setExpirationOnlyEnabled(true);
+        cachedUser.setCleaned(false);
+        when(slackClient.isUserLive(cachedUser)).thenReturn(true);
+        when(spotifyClient.getCurrentLiveTrack(cachedUser)).thenReturn(Optional.empty());
+        statusUpdateScheduler.scheduleFixedDelayTask();
+        verify(slackClient).isUserLive(cachedUser);
+        verify(slackClient).releaseStatus(cachedUser);
+        verifyNoMoreInteractions(slackClient);
+    }
+
+    @Test
+    void schedulerShouldRemoveTrackOfOfflineUser() throws InterruptedException {
+        doNothing().when(statusUpdateScheduler).sleep(anyLong());
+        mockExecutor();
+        teamTrackBoard.publish(cachedUser, new SpotifyCurrentItem());
+        when(slackClient.isUserLive(cachedUser)).thenReturn(false);
+        statusUpdateScheduler.scheduleFixedDelayTask();
+        assertTrue(teamTrackBoard.getLiveTracks("teamId").isEmpty());
+    }
+
+    private SpotifyCurrentItem createPlayingTrack(String trackId) {
+        SpotifyCurrentItem currentItem = new SpotifyCurrentItem();
+        currentItem.setTrackId(trackId);
+        currentItem.setIsPlaying(true);
+        return currentItem;
     }
 
     private CachedUser createCachedUser() {
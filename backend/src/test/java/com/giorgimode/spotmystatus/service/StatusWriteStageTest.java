@@ -0,0 +1,129 @@
+package com.giorgimode.spotmystatus.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import com.giorgimode.spotmystatus.TestUtils;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import com.giorgimode.spotmystatus.slack.SlackClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class StatusWriteStageTest {
+
+    @Mock
+    private SlackClient slackClient;
+
+    @Mock
+    private ExecutorService statusWriteExecutor;
+
+    private SimpleMeterRegistry meterRegistry;
+    private StatusWriteStage statusWriteStage;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setStatusWriteMinInterval(0L);
+        statusWriteStage = new StatusWriteStage(slackClient, statusWriteExecutor, spotMyStatusProperties, meterRegistry);
+    }
+
+    @Test
+    void shouldSendOnlyLatestPendingWrite() {
+        CachedUser cachedUser = TestUtils.createCachedUser();
+        SpotifyCurrentItem firstItem = new SpotifyCurrentItem();
+        firstItem.setTrackId("track123");
+        SpotifyCurrentItem secondItem = new SpotifyCurrentItem();
+        secondItem.setTrackId("track456");
+        statusWriteStage.submitUpdate(cachedUser, firstItem);
+        statusWriteStage.submitUpdate(cachedUser, secondItem);
+
+        ArgumentCaptor<Runnable> writeCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(statusWriteExecutor).execute(writeCaptor.capture());
+        writeCaptor.getValue().run();
+
+        verify(slackClient).updateAndPersistStatus(cachedUser, secondItem);
+        verifyNoMoreInteractions(slackClient);
+        assertEquals(1, meterRegistry.counter("spotmystatus.poll.stage.skipped", "stage", "write", "reason", "superseded").count());
+    }
+
+    @Test
+    void shouldSendWriteSubmittedInFlightAfterCurrentOne() {
+        CachedUser cachedUser = TestUtils.createCachedUser();
+        SpotifyCurrentItem currentItem = new SpotifyCurrentItem();
+        doAnswer(invocation -> {
+            statusWriteStage.submitClean(cachedUser);
+            return null;
+        }).when(slackClient).updateAndPersistStatus(cachedUser, currentItem);
+        statusWriteStage.submitUpdate(cachedUser, currentItem);
+
+        ArgumentCaptor<Runnable> writeCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(statusWriteExecutor).execute(writeCaptor.capture());
+        writeCaptor.getValue().run();
+        verify(statusWriteExecutor, times(2)).execute(writeCaptor.capture());
+        List<Runnable> writes = writeCaptor.getAllValues();
+        writes.get(writes.size() - 1).run();
+
+        InOrder inOrder = inOrder(slackClient);
+        inOrder.verify(slackClient).updateAndPersistStatus(cachedUser, currentItem);
+        inOrder.verify(slackClient).cleanStatus(cachedUser);
+    }
+
+    @Test
+    void shouldDropUpdateOfUserWithManualStatus() {
+        CachedUser cachedUser = TestUtils.createCachedUser();
+        statusWriteStage.submitUpdate(cachedUser, new SpotifyCurrentItem());
+        cachedUser.setManualStatus(true);
+
+        ArgumentCaptor<Runnable> writeCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(statusWriteExecutor).execute(writeCaptor.capture());
+        writeCaptor.getValue().run();
+
+        verifyNoInteractions(slackClient);
+    }
+
+    @Test
+    void shouldDropDiscardedWrite() {
+        CachedUser cachedUser = TestUtils.createCachedUser();
+        statusWriteStage.submitClean(cachedUser);
+        statusWriteStage.discard(cachedUser.getId());
+
+        ArgumentCaptor<Runnable> writeCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(statusWriteExecutor).execute(writeCaptor.capture());
+        writeCaptor.getValue().run();
+
+        verifyNoInteractions(slackClient);
+        assertFalse(statusWriteStage.isWriting(cachedUser.getId()));
+    }
+
+    @Test
+    void shouldReleaseUserWhenQueueIsFull() {
+        CachedUser cachedUser = TestUtils.createCachedUser();
+        doThrow(new RejectedExecutionException()).when(statusWriteExecutor).execute(any(Runnable.class));
+        statusWriteStage.submitClean(cachedUser);
+        statusWriteStage.submitClean(cachedUser);
+
+        verify(statusWriteExecutor, times(2)).execute(any(Runnable.class));
+        assertEquals(2, meterRegistry.counter("spotmystatus.poll.stage.skipped", "stage", "write", "reason", "queue_full").count());
+        verifyNoInteractions(slackClient);
+    }
+}
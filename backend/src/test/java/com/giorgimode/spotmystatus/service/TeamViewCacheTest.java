@@ -0,0 +1,144 @@
+package com.giorgimode.spotmystatus.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.service.TeamViewCache.TeamTracksView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TeamViewCacheTest {
+
+    private static final String TEST_TEAM_ID = "team123";
+
+    private SimpleMeterRegistry meterRegistry;
+    private TeamViewCache teamViewCache;
+
+    @BeforeEach
+    void setUp() {
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setTeamViewTtl(60000L);
+        spotMyStatusProperties.setTeamViewWaitTimeout(200L);
+        meterRegistry = new SimpleMeterRegistry();
+        teamViewCache = new TeamViewCache(spotMyStatusProperties, meterRegistry);
+    }
+
+    @Test
+    void shouldReuseRenderedView() {
+        TeamTracksView renderedView = new TeamTracksView(List.of(), "tracks");
+        AtomicInteger renderCount = new AtomicInteger();
+        assertSame(renderedView, teamViewCache.getTracksView(TEST_TEAM_ID, teamId -> render(renderCount, renderedView)));
+        assertSame(renderedView, teamViewCache.getTracksView(TEST_TEAM_ID, teamId -> render(renderCount, renderedView)));
+        assertEquals(1, renderCount.get());
+        assertEquals(1, countRequests("miss"));
+        assertEquals(1, countRequests("hit"));
+    }
+
+    @Test
+    void shouldCoalesceConcurrentRequests() throws Exception {
+        TeamTracksView renderedView = new TeamTracksView(List.of(), "tracks");
+        CountDownLatch renderingStarted = new CountDownLatch(1);
+        CountDownLatch renderingReleased = new CountDownLatch(1);
+        CompletableFuture<TeamTracksView> firstRequest = CompletableFuture.supplyAsync(
+            () -> teamViewCache.getTracksView(TEST_TEAM_ID, teamId -> {
+                renderingStarted.countDown();
+                await(renderingReleased);
+                return renderedView;
+            }));
+        await(renderingStarted);
+        CompletableFuture<TeamTracksView> secondRequest = CompletableFuture.supplyAsync(
+            () -> teamViewCache.getTracksView(TEST_TEAM_ID, teamId -> {
+                throw new IllegalStateException("View should not be rendered twice");
+            }));
+        while (countRequests("coalesced") == 0) {
+            Thread.onSpinWait();
+        }
+        renderingReleased.countDown();
+
+        assertSame(renderedView, firstRequest.get(5, TimeUnit.SECONDS));
+        assertSame(renderedView, secondRequest.get(5, TimeUnit.SECONDS));
+        assertEquals(1, countRequests("miss"));
+        assertEquals(1, countRequests("coalesced"));
+    }
+
+    @Test
+    void shouldNotCacheFailedRendering() {
+        assertThrows(IllegalStateException.class, () -> teamViewCache.getTracksView(TEST_TEAM_ID, teamId -> {
+            throw new IllegalStateException();
+        }));
+        TeamTracksView renderedView = new TeamTracksView(List.of(), "tracks");
+        assertSame(renderedView, teamViewCache.getTracksView(TEST_TEAM_ID, teamId -> renderedView));
+    }
+
+    @Test
+    void shouldReleaseWaitersOnError() throws Exception {
+        CountDownLatch renderingStarted = new CountDownLatch(1);
+        CountDownLatch renderingReleased = new CountDownLatch(1);
+        CompletableFuture<TeamTracksView> firstRequest = CompletableFuture.supplyAsync(
+            () -> teamViewCache.getTracksView(TEST_TEAM_ID, teamId -> {
+                renderingStarted.countDown();
+                await(renderingReleased);
+                throw new StackOverflowError();
+            }));
+        await(renderingStarted);
+        CompletableFuture<TeamTracksView> secondRequest = CompletableFuture.supplyAsync(
+            () -> teamViewCache.getTracksView(TEST_TEAM_ID, teamId -> null));
+        while (countRequests("coalesced") == 0) {
+            Thread.onSpinWait();
+        }
+        renderingReleased.countDown();
+
+        ExecutionException secondFailure = assertThrows(ExecutionException.class, () -> secondRequest.get(5, TimeUnit.SECONDS));
+        assertTrue(secondFailure.getCause() instanceof StackOverflowError, secondFailure.toString());
+        assertThrows(ExecutionException.class, () -> firstRequest.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldStopWaitingForSlowRendering() {
+        CountDownLatch renderingStarted = new CountDownLatch(1);
+        CountDownLatch renderingReleased = new CountDownLatch(1);
+        TeamTracksView renderedView = new TeamTracksView(List.of(), "tracks");
+        CompletableFuture<TeamTracksView> firstRequest = CompletableFuture.supplyAsync(
+            () -> teamViewCache.getTracksView(TEST_TEAM_ID, teamId -> {
+                renderingStarted.countDown();
+                await(renderingReleased);
+                return renderedView;
+            }));
+        await(renderingStarted);
+
+        CompletionException failure = assertThrows(CompletionException.class,
+            () -> teamViewCache.getTracksView(TEST_TEAM_ID, teamId -> renderedView));
+        renderingReleased.countDown();
+
+        assertTrue(failure.getCause() instanceof TimeoutException, failure.toString());
+        assertSame(renderedView, firstRequest.join());
+    }
+
+    private TeamTracksView render(AtomicInteger renderCount, TeamTracksView renderedView) {
+        renderCount.incrementAndGet();
+        return renderedView;
+    }
+
+    private long countRequests(String result) {
+        return (long) meterRegistry.get("spotmystatus.team_view.requests").tag("result", result).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -13,10 +13,14 @@ import static com.giorgimode.spotmystatus.service.UserInteractionService.SLACK_V
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -30,12 +34,14 @@ import com.giorgimode.spotmystatus.model.modals.Block;
 import com.giorgimode.spotmystatus.model.modals.InteractionModal;
 import com.giorgimode.spotmystatus.model.modals.InvocationModal;
 import com.giorgimode.spotmystatus.model.modals.State;
-import com.giorgimode.spotmystatus.persistence.User;
+import com.giorgimode.spotmystatus.persistence.TeamIndex;
 import com.giorgimode.spotmystatus.persistence.UserRepository;
+import com.giorgimode.spotmystatus.persistence.UserWriteBehindQueue;
 import com.giorgimode.spotmystatus.slack.SlackClient;
 import com.giorgimode.spotmystatus.spotify.SpotifyClient;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -44,7 +50,6 @@ import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -55,6 +60,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.Resource;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.server.ResponseStatusException;
@@ -65,13 +71,20 @@ class UserInteractionServiceTest {
 
     private static final String TEST_USER_ID = "test_user_id";
     private static final String TEST_TEAM_ID = "team_123";
+    private static final String PUBLISHED_RESPONSE = "{\"ok\":true}";
     private LoadingCache<String, CachedUser> userCache;
     private CachedUser cachedUser;
     private UserInteractionService userInteractionService;
+    private UserWriteBehindQueue userWriteBehindQueue;
+    private TeamIndex teamIndex;
+    private TeamTrackBoard teamTrackBoard;
 
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @Mock
     private SlackClient slackClient;
 
@@ -105,7 +118,17 @@ class UserInteractionServiceTest {
         spotMyStatusProperties.setRedirectUriScheme("https");
         spotMyStatusProperties.setMinSleepOnApiRateExceeded(1);
         spotMyStatusProperties.setDefaultEmojis(List.of("notes"));
-        userInteractionService = new UserInteractionService(userRepository, spotMyStatusProperties, userCache, slackClient, spotifyClient);
+        spotMyStatusProperties.setTrackBoardTtl(30000L);
+        spotMyStatusProperties.setTeamViewTtl(2000L);
+        spotMyStatusProperties.setHomeTabTtl(60000L);
+        spotMyStatusProperties.setHomeTabDebounce(0L);
+        teamIndex = new TeamIndex();
+        teamTrackBoard = new TeamTrackBoard(spotMyStatusProperties);
+        userWriteBehindQueue = new UserWriteBehindQueue(userRepository, transactionManager, 50);
+        userInteractionService = new UserInteractionService(teamIndex, teamTrackBoard,
+            new TeamViewCache(spotMyStatusProperties, new SimpleMeterRegistry()),
+            new HomeTabCache(spotMyStatusProperties, new SimpleMeterRegistry()), userWriteBehindQueue, spotMyStatusProperties, userCache,
+            slackClient, spotifyClient);
 
         cachedUser = createCachedUser();
         ReflectionTestUtils.setField(userInteractionService, "resourceFile", resourceFile);
@@ -137,6 +160,19 @@ class UserInteractionServiceTest {
         assertEquals(18, sentModal.getView().getBlocks().size());
     }
 
+    @Test
+    void shouldParseTemplateOnlyOnce() throws IOException {
+        mockTemplateResource();
+        userInteractionService.handleTrigger(TEST_USER_ID, "trigger123");
+        userInteractionService.handleTrigger(TEST_USER_ID, "trigger456");
+
+        verify(resourceFile, times(1)).getInputStream();
+        verify(slackClient, times(2)).notifyUser(eq(SLACK_VIEW_OPEN_URI), invocationModalCaptor.capture(), eq(TEST_USER_ID));
+        List<InvocationModal> invocationModals = invocationModalCaptor.getAllValues();
+        assertNotSame(invocationModals.get(0).getView(), invocationModals.get(1).getView());
+        assertEquals(invocationModals.get(0).getView().getBlocks().size(), invocationModals.get(1).getView().getBlocks().size());
+    }
+
     @Test
     void shouldThrow500OnFailedTemplate() throws IOException {
         when(resourceFile.getInputStream()).thenReturn(new ByteArrayInputStream("garbage_data".getBytes(StandardCharsets.UTF_8)));
@@ -238,31 +274,31 @@ class UserInteractionServiceTest {
     }
 
     @Test
-    void shouldHandleSpotifyLinksCommand() throws IOException {
-        User storedUser = new User();
-        storedUser.setId(TEST_USER_ID);
-        when(slackClient.isUserLive(cachedUser)).thenReturn(true);
+    void shouldHandleSpotifyLinksCommand() {
         SpotifyCurrentItem currentItem = new SpotifyCurrentItem();
         currentItem.setArtists(List.of("Swans"));
-        when(spotifyClient.getCurrentLiveTrack(cachedUser)).thenReturn(Optional.of(currentItem));
-        when(userRepository.findAllByTeamId(TEST_TEAM_ID)).thenReturn(List.of(storedUser));
-        String triggerId = "trigger123";
-        String modalContent = TestUtils.getFileContent("files/invocation_template.json");
-        InvocationModal invocationModal = OBJECT_MAPPER.readValue(modalContent, InvocationModal.class);
-        invocationModal.setTriggerId(triggerId);
-        invocationModal.getActions().get(0).setBlockId(BLOCK_ID_SPOTIFY_LINKS);
+        currentItem.setTitle("The Glowing Man");
+        teamIndex.add(TEST_TEAM_ID, TEST_USER_ID);
+        teamTrackBoard.publish(cachedUser, currentItem);
         String response = userInteractionService.getCurrentTracksMessage(TEST_USER_ID);
         assertNotNull(response);
-        verify(slackClient).isUserLive(cachedUser);
-        verify(spotifyClient).getCurrentLiveTrack(cachedUser);
+        assertTrue(response.contains("Swans - The Glowing Man"));
+        verifyNoInteractions(slackClient);
+        verifyNoInteractions(spotifyClient);
+    }
+
+    @Test
+    void shouldSkipTracksOfFormerTeammates() {
+        SpotifyCurrentItem currentItem = new SpotifyCurrentItem();
+        currentItem.setArtists(List.of("Swans"));
+        teamTrackBoard.publish(cachedUser, currentItem);
+        String response = userInteractionService.getCurrentTracksMessage(TEST_USER_ID);
+        assertTrue(response.contains(NO_TRACK_WARNING_MESSAGE));
     }
 
     @Test
     void shouldHandleSubmission() throws IOException {
         mockTemplateResource();
-        User storedUser = new User();
-        storedUser.setId(TEST_USER_ID);
-        when(userRepository.findById(TEST_USER_ID)).thenReturn(Optional.of(storedUser));
         String modalContent = TestUtils.getFileContent("files/submission_template.json");
         InvocationModal invocationModal = OBJECT_MAPPER.readValue(modalContent, InvocationModal.class);
         InteractionModal modal = userInteractionService.handleUserInteraction(invocationModal);
@@ -283,14 +319,81 @@ class UserInteractionServiceTest {
         assertEquals(List.of(SpotifyItem.TRACK), cachedUser.getSpotifyItems());
         assertTrue(cachedUser.getSpotifyDeviceIds().containsAll(List.of("echoDotId123", "macbookDeviceId123")));
         verify(slackClient).resume(TEST_USER_ID);
-        verify(userRepository).findById(TEST_USER_ID);
-        verify(userRepository).save(storedUser);
-        assertNotNull(storedUser.toString());
-        assertEquals("guitar", storedUser.getEmojis());
-        assertEquals("track", storedUser.getSpotifyItems());
-        assertEquals("macbookDeviceId123,echoDotId123", storedUser.getSpotifyDevices());
-        assertEquals(700, storedUser.getSyncFrom());
-        assertEquals(2000, storedUser.getSyncTo());
+        verifyNoInteractions(userRepository);
+        userWriteBehindQueue.flush();
+        verify(userRepository).updateEmojis(List.of(TEST_USER_ID), "guitar");
+        verify(userRepository).updateSpotifyItems(List.of(TEST_USER_ID), "track");
+        verify(userRepository).updateSpotifyDevices(List.of(TEST_USER_ID), "macbookDeviceId123,echoDotId123");
+        verify(userRepository).updateSyncHours(List.of(TEST_USER_ID), 700, 2000);
+        verify(userRepository, never()).findById(TEST_USER_ID);
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void shouldSkipPublishingUnchangedHomeTab() throws IOException {
+        mockTemplateResource();
+        when(slackClient.notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), eq(TEST_USER_ID)))
+            .thenReturn(PUBLISHED_RESPONSE);
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+        verify(slackClient, times(1)).notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), eq(TEST_USER_ID));
+
+        userCache.get(TEST_USER_ID).setEmojis(List.of("guitar"));
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+        verify(slackClient, times(2)).notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), eq(TEST_USER_ID));
+
+        userInteractionService.invalidateHomeTab(TEST_USER_ID);
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+        verify(slackClient, times(3)).notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), eq(TEST_USER_ID));
+    }
+
+    @Test
+    void shouldDebounceHomeTabUpdates() throws IOException {
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setHomeTabTtl(60000L);
+        spotMyStatusProperties.setHomeTabDebounce(60000L);
+        HomeTabCache homeTabCache = new HomeTabCache(spotMyStatusProperties, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(userInteractionService, "homeTabCache", homeTabCache);
+        mockTemplateResource();
+        when(slackClient.notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), eq(TEST_USER_ID)))
+            .thenReturn(PUBLISHED_RESPONSE);
+
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+
+        verify(spotifyClient, times(1)).getSpotifyDevices(any());
+        verify(slackClient, times(1)).notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), eq(TEST_USER_ID));
+    }
+
+    @Test
+    void shouldPublishChangeMadeWhileDebouncing() throws IOException {
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setHomeTabTtl(60000L);
+        spotMyStatusProperties.setHomeTabDebounce(200L);
+        HomeTabCache homeTabCache = new HomeTabCache(spotMyStatusProperties, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(userInteractionService, "homeTabCache", homeTabCache);
+        mockTemplateResource();
+        when(slackClient.notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), eq(TEST_USER_ID)))
+            .thenReturn(PUBLISHED_RESPONSE);
+
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+        userCache.get(TEST_USER_ID).setEmojis(List.of("guitar"));
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+
+        verify(slackClient, timeout(2000).times(2)).notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), eq(TEST_USER_ID));
+        homeTabCache.onDestroy();
+    }
+
+    @Test
+    void shouldRepublishHomeTabAfterFailedPublish() throws IOException {
+        mockTemplateResource();
+        when(slackClient.notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), eq(TEST_USER_ID)))
+            .thenReturn("{\"ok\":false,\"error\":\"ratelimited\"}", PUBLISHED_RESPONSE);
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+        userInteractionService.updateHomeTab(TEST_USER_ID);
+        verify(slackClient, times(2)).notifyUser(eq(SLACK_VIEW_PUBLISH_URI), any(InteractionModal.class), eq(TEST_USER_ID));
     }
 
     @Test
@@ -0,0 +1,112 @@
+package com.giorgimode.spotmystatus.service;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import com.giorgimode.spotmystatus.TestUtils;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class WorkingHoursWheelTest {
+
+    @Mock
+    private Consumer<CachedUser> sleepAction;
+
+    private LoadingCache<String, CachedUser> userCache;
+    private WorkingHoursWheel workingHoursWheel;
+    private CachedUser cachedUser;
+
+    @BeforeEach
+    void setUp() {
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setWorkingHoursEnabled(true);
+        spotMyStatusProperties.setSyncStartHr(8);
+        spotMyStatusProperties.setSyncEndHr(19);
+        userCache = Caffeine.newBuilder().build(key -> null);
+        workingHoursWheel = new WorkingHoursWheel(userCache, spotMyStatusProperties);
+        cachedUser = TestUtils.cachedUserBuilder()
+                              .syncStartHour(900)
+                              .syncEndHour(1730)
+                              .build();
+        userCache.put(cachedUser.getId(), cachedUser);
+    }
+
+    @Test
+    void shouldSleepAtEndAndWakeAtStartOfWorkingHours() {
+        assertTrue(workingHoursWheel.isAwake(cachedUser, minute(1000), sleepAction));
+        workingHoursWheel.advance(minute(1729), sleepAction);
+        verifyNoInteractions(sleepAction);
+
+        workingHoursWheel.advance(minute(1730), sleepAction);
+        verify(sleepAction).accept(cachedUser);
+        assertFalse(workingHoursWheel.isAwake(cachedUser, minute(1731), sleepAction));
+
+        workingHoursWheel.advance(minute(859), sleepAction);
+        assertFalse(workingHoursWheel.isAwake(cachedUser, minute(859), sleepAction));
+        workingHoursWheel.advance(minute(900), sleepAction);
+        assertTrue(workingHoursWheel.isAwake(cachedUser, minute(900), sleepAction));
+        verify(sleepAction).accept(cachedUser);
+    }
+
+    @Test
+    void shouldNotSkipTransitionsOfDelayedTick() {
+        assertTrue(workingHoursWheel.isAwake(cachedUser, minute(1700), sleepAction));
+        workingHoursWheel.advance(minute(1700), sleepAction);
+        workingHoursWheel.advance(minute(1800), sleepAction);
+        verify(sleepAction).accept(cachedUser);
+        assertFalse(workingHoursWheel.isAwake(cachedUser, minute(1800), sleepAction));
+    }
+
+    @Test
+    void shouldApplyChangedWorkingHours() {
+        assertFalse(workingHoursWheel.isAwake(cachedUser, minute(2000), sleepAction));
+        verify(sleepAction).accept(cachedUser);
+
+        // working hours across midnight
+        cachedUser.setSyncStartHour(1900);
+        cachedUser.setSyncEndHour(200);
+        assertTrue(workingHoursWheel.isAwake(cachedUser, minute(2000), sleepAction));
+        workingHoursWheel.advance(minute(2000), sleepAction);
+        workingHoursWheel.advance(minute(300), sleepAction);
+        assertFalse(workingHoursWheel.isAwake(cachedUser, minute(300), sleepAction));
+        verify(sleepAction, times(2)).accept(cachedUser);
+        workingHoursWheel.advance(minute(1900), sleepAction);
+        assertTrue(workingHoursWheel.isAwake(cachedUser, minute(1900), sleepAction));
+    }
+
+    @Test
+    void shouldFallBackToDefaultWorkingHours() {
+        cachedUser.setSyncStartHour(null);
+        cachedUser.setSyncEndHour(null);
+        assertFalse(workingHoursWheel.isAwake(cachedUser, minute(700), sleepAction));
+        workingHoursWheel.advance(minute(800), sleepAction);
+        assertTrue(workingHoursWheel.isAwake(cachedUser, minute(800), sleepAction));
+    }
+
+    @Test
+    void shouldForgetRemovedUser() {
+        assertTrue(workingHoursWheel.isAwake(cachedUser, minute(1000), sleepAction));
+        workingHoursWheel.remove(cachedUser.getId());
+        workingHoursWheel.advance(minute(1730), sleepAction);
+        verifyNoInteractions(sleepAction);
+
+        // a user cached again is registered anew
+        assertFalse(workingHoursWheel.isAwake(cachedUser, minute(1731), sleepAction));
+        verify(sleepAction).accept(cachedUser);
+    }
+
+    private static int minute(int hour) {
+        return hour / 100 * 60 + hour % 100;
+    }
+}
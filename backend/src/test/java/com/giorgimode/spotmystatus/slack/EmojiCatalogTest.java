@@ -0,0 +1,100 @@
+package com.giorgimode.spotmystatus.slack;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import com.giorgimode.spotmystatus.TestUtils;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class EmojiCatalogTest {
+
+    @Mock
+    private ExecutorService executor;
+
+    @Mock
+    private Function<CachedUser, Set<String>> loader;
+
+    private SpotMyStatusProperties spotMyStatusProperties;
+    private CachedUser cachedUser;
+
+    @BeforeEach
+    void setUp() {
+        spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setEmojiCatalogTtl(600000L);
+        cachedUser = TestUtils.createCachedUser();
+    }
+
+    @Test
+    void shouldSkipRejectedEmojisUnlessCustom() {
+        mockExecutor();
+        when(loader.apply(cachedUser)).thenReturn(Set.of("party_parrot"));
+        EmojiCatalog emojiCatalog = new EmojiCatalog(spotMyStatusProperties, executor);
+
+        assertTrue(emojiCatalog.isAvailable(cachedUser, "headphones", loader));
+        emojiCatalog.reject("team123", "headphones");
+        emojiCatalog.reject("team123", "party_parrot");
+        assertFalse(emojiCatalog.isAvailable(cachedUser, "headphones", loader));
+        assertTrue(emojiCatalog.isAvailable(cachedUser, "party_parrot", loader));
+        // emojis are fetched once per team
+        verify(loader).apply(cachedUser);
+        verify(executor).execute(any(Runnable.class));
+    }
+
+    @Test
+    void shouldNotRetryFailedFetchBeforeRefresh() {
+        mockExecutor();
+        EmojiCatalog emojiCatalog = new EmojiCatalog(spotMyStatusProperties, executor);
+
+        assertTrue(emojiCatalog.isAvailable(cachedUser, "headphones", loader));
+        assertTrue(emojiCatalog.isAvailable(cachedUser, "notes", loader));
+        verify(loader).apply(cachedUser);
+    }
+
+    @Test
+    void shouldRefreshEmojisInBackground() throws InterruptedException {
+        spotMyStatusProperties.setEmojiCatalogTtl(1L);
+        mockExecutor();
+        when(loader.apply(cachedUser)).thenReturn(Set.of(), Set.of("party_parrot"));
+        EmojiCatalog emojiCatalog = new EmojiCatalog(spotMyStatusProperties, executor);
+
+        assertTrue(emojiCatalog.isAvailable(cachedUser, "party_parrot", loader));
+        Thread.sleep(10);
+        emojiCatalog.isAvailable(cachedUser, "party_parrot", loader);
+        verify(loader, times(2)).apply(cachedUser);
+        verify(executor, times(2)).execute(any(Runnable.class));
+    }
+
+    @Test
+    void shouldTreatEmojisAsAvailableUntilLoaded() {
+        EmojiCatalog emojiCatalog = new EmojiCatalog(spotMyStatusProperties, executor);
+
+        assertTrue(emojiCatalog.isAvailable(cachedUser, "party_parrot", loader));
+        assertTrue(emojiCatalog.isAvailable(cachedUser, "party_parrot", loader));
+        // the pending fetch is not started again
+        verify(executor).execute(any(Runnable.class));
+        verifyNoInteractions(loader);
+    }
+
+    private void mockExecutor() {
+        doAnswer((InvocationOnMock invocation) -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return null;
+        }).when(executor).execute(any(Runnable.class));
+    }
+}
@@ -2,24 +2,41 @@ package com.giorgimode.spotmystatus.slack;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
 import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.EmojiRotation;
 import com.giorgimode.spotmystatus.model.SlackResponse;
+import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent.Reason;
+import com.giorgimode.spotmystatus.persistence.TeamIndex;
 import com.giorgimode.spotmystatus.persistence.UserRepository;
+import com.giorgimode.spotmystatus.persistence.UserWriteBehindQueue;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -37,12 +54,24 @@ class SlackClientTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserWriteBehindQueue userWriteBehindQueue;
+
+    @Mock
+    private TeamIndex teamIndex;
+
     @Mock
     private SpotMyStatusProperties configProperties;
 
     @Mock
     private LoadingCache<String, CachedUser> userCache;
 
+    @Mock
+    private EmojiCatalog emojiCatalog;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private SlackClient slackClient;
 
@@ -53,7 +82,12 @@ class SlackClientTest {
         when(userCache.getIfPresent(TEST_USER_ID)).thenReturn(cachedUser);
         slackClient.invalidateAndNotifyUser(TEST_USER_ID);
         verify(userCache).invalidate(TEST_USER_ID);
+        verify(teamIndex).remove(TEST_USER_ID);
+        verify(userWriteBehindQueue).discard(TEST_USER_ID);
         verify(userRepository).deleteById(TEST_USER_ID);
+        verify(eventPublisher).publishEvent(argThat((UserReleasedEvent event) ->
+            TEST_USER_ID.equals(event.getUserId()) && cachedUser.getTeamId().equals(event.getTeamId())
+                && event.getReason() == Reason.INVALIDATED));
         verify(restTemplate).postForEntity(eq("https://fake-slack.com/api/chat.postMessage"), any(HttpEntity.class), eq(
             String.class));
     }
@@ -65,15 +99,6 @@ class SlackClientTest {
         assertFalse(slackClient.isUserLive(cachedUser));
     }
 
-    @Test
-    void userIsNotAliveDuringOfflineHours() {
-        CachedUser cachedUser = createCachedUser();
-        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
-        cachedUser.setSyncStartHour(now.plusHours(1).getHour() * 100);
-        cachedUser.setSyncEndHour(now.plusHours(8).getHour() * 100);
-        assertFalse(slackClient.isUserLive(cachedUser));
-    }
-
     @Test
     void userIsNotAliveWhenUserNotActive() {
         when(configProperties.getSlackUri()).thenReturn("https://fake-slack.com");
@@ -125,6 +150,143 @@ class SlackClientTest {
         assertEquals(newStatus, cachedUser.getSlackStatus());
     }
 
+    @Test
+    void shouldSkipStatusUpdateOfSameTrack() {
+        SlackStatusPayload slackStatusUpdateResponse = new SlackStatusPayload();
+        slackStatusUpdateResponse.setOk(true);
+        when(configProperties.getSlackUri()).thenReturn("https://fake-slack.com");
+        when(configProperties.getExpirationOverhead()).thenReturn(5000);
+        when(restTemplate.postForEntity(eq("https://fake-slack.com/api/users.profile.set"), any(HttpEntity.class), eq(
+            SlackStatusPayload.class))).thenReturn(new ResponseEntity<>(slackStatusUpdateResponse, HttpStatus.OK));
+        when(emojiCatalog.isAvailable(any(CachedUser.class), eq("headphones"), any())).thenReturn(true);
+        CachedUser cachedUser = createCachedUser();
+        cachedUser.setEmojis(List.of("headphones"));
+
+        slackClient.updateAndPersistStatus(cachedUser, createCurrentTrack("track123", "The Glowing Man"));
+        slackClient.updateAndPersistStatus(cachedUser, createCurrentTrack("track123", "The Glowing Man"));
+        verify(restTemplate).postForEntity(eq("https://fake-slack.com/api/users.profile.set"), any(HttpEntity.class), eq(
+            SlackStatusPayload.class));
+        assertEquals("track123", cachedUser.getStatusTrackId());
+        assertFalse(cachedUser.isCleaned());
+
+        slackClient.updateAndPersistStatus(cachedUser, createCurrentTrack("track456", "Cloud of Forgetting"));
+        verify(restTemplate, times(2)).postForEntity(eq("https://fake-slack.com/api/users.profile.set"), any(HttpEntity.class), eq(
+            SlackStatusPayload.class));
+        assertEquals("track456", cachedUser.getStatusTrackId());
+        assertEquals("Swans - Cloud of Forgetting", cachedUser.getSlackStatus());
+    }
+
+    @Test
+    void shouldExpireStatusCloseToTrackEnd() {
+        SlackStatusPayload slackStatusUpdateResponse = new SlackStatusPayload();
+        slackStatusUpdateResponse.setOk(true);
+        when(configProperties.getSlackUri()).thenReturn("https://fake-slack.com");
+        when(configProperties.getExpirationOnlyEnabled()).thenReturn(true);
+        when(configProperties.getExpirationOnlyOverhead()).thenReturn(15000);
+        when(restTemplate.postForEntity(eq("https://fake-slack.com/api/users.profile.set"), any(HttpEntity.class), eq(
+            SlackStatusPayload.class))).thenReturn(new ResponseEntity<>(slackStatusUpdateResponse, HttpStatus.OK));
+        when(emojiCatalog.isAvailable(any(CachedUser.class), eq("headphones"), any())).thenReturn(true);
+        CachedUser cachedUser = createCachedUser();
+        cachedUser.setEmojis(List.of("headphones"));
+
+        SpotifyCurrentItem currentTrack = createCurrentTrack("track123", "The Glowing Man");
+        // the write is sent a while after the track has been polled
+        currentTrack.setFetchedAt(System.currentTimeMillis() - 10000);
+        slackClient.updateAndPersistStatus(cachedUser, currentTrack);
+        ArgumentCaptor<HttpEntity> requestCaptor = ArgumentCaptor.forClass(HttpEntity.class);
+        verify(restTemplate).postForEntity(eq("https://fake-slack.com/api/users.profile.set"), requestCaptor.capture(), eq(
+            SlackStatusPayload.class));
+        long statusExpiration = ((SlackStatusPayload) requestCaptor.getValue().getBody()).getProfile().getStatusExpiration();
+        // remaining 299 seconds of the track as of the poll and 15 seconds of overhead
+        assertEquals((currentTrack.getFetchedAt() + 314000) / 1000, statusExpiration);
+    }
+
+    @Test
+    void shouldLeaveStatusToExpire() {
+        when(configProperties.getExpirationOnlyEnabled()).thenReturn(true);
+        CachedUser cachedUser = createCachedUser();
+        cachedUser.setCleaned(false);
+        slackClient.releaseStatus(cachedUser);
+        assertTrue(cachedUser.isCleaned());
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    void shouldRotateToEmojiOtherThanCurrent() {
+        SlackStatusPayload slackStatusUpdateResponse = new SlackStatusPayload();
+        slackStatusUpdateResponse.setOk(true);
+        when(configProperties.getSlackUri()).thenReturn("https://fake-slack.com");
+        when(configProperties.getExpirationOverhead()).thenReturn(5000);
+        when(restTemplate.postForEntity(eq("https://fake-slack.com/api/users.profile.set"), any(HttpEntity.class), eq(
+            SlackStatusPayload.class))).thenReturn(new ResponseEntity<>(slackStatusUpdateResponse, HttpStatus.OK));
+        when(emojiCatalog.isAvailable(any(CachedUser.class), any(), any())).thenReturn(true);
+        lenient().when(emojiCatalog.isAvailable(any(CachedUser.class), eq("parrot"), any())).thenReturn(false);
+        CachedUser cachedUser = createCachedUser();
+        cachedUser.setEmojis(List.of("headphones", "parrot", "notes"));
+        cachedUser.setCurrentEmoji(":headphones:");
+
+        slackClient.updateAndPersistStatus(cachedUser, createCurrentTrack("track123", "The Glowing Man"));
+        ArgumentCaptor<HttpEntity> requestCaptor = ArgumentCaptor.forClass(HttpEntity.class);
+        verify(restTemplate).postForEntity(eq("https://fake-slack.com/api/users.profile.set"), requestCaptor.capture(), eq(
+            SlackStatusPayload.class));
+        assertEquals(":notes:", ((SlackStatusPayload) requestCaptor.getValue().getBody()).getProfile().getStatusEmoji());
+    }
+
+    @Test
+    void shouldPickOtherEmojisEvenly() {
+        CachedUser cachedUser = createCachedUser();
+        cachedUser.setCurrentEmoji(":headphones:");
+        EmojiRotation rotation = EmojiRotation.of(List.of("headphones", "parrot", "notes"));
+
+        Map<String, Integer> picks = new HashMap<>();
+        for (int i = 0; i < 600; i++) {
+            picks.merge(slackClient.pickEmoji(cachedUser, rotation, false), 1, Integer::sum);
+        }
+        assertEquals(Set.of(":parrot:", ":notes:"), picks.keySet());
+        // an even split is 300 each, the emoji following the current one used to be picked twice as often
+        assertTrue(picks.get(":parrot:") > 200 && picks.get(":notes:") > 200);
+    }
+
+    @Test
+    void shouldFallBackToCurrentEmoji() {
+        CachedUser cachedUser = createCachedUser();
+        cachedUser.setCurrentEmoji(":headphones:");
+
+        assertEquals(":headphones:", slackClient.pickEmoji(cachedUser, EmojiRotation.of(List.of("headphones")), false));
+        assertNull(slackClient.pickEmoji(cachedUser, EmojiRotation.EMPTY, false));
+    }
+
+    @Test
+    void shouldRemoveEmojiRejectedBySlack() {
+        SlackStatusPayload slackStatusUpdateResponse = new SlackStatusPayload();
+        slackStatusUpdateResponse.setError("profile_status_set_failed_not_valid_emoji");
+        when(configProperties.getSlackUri()).thenReturn("https://fake-slack.com");
+        when(configProperties.getExpirationOverhead()).thenReturn(5000);
+        when(emojiCatalog.isAvailable(any(CachedUser.class), eq("parrot"), any())).thenReturn(true);
+        when(restTemplate.postForEntity(eq("https://fake-slack.com/api/users.profile.set"), any(HttpEntity.class), eq(
+            SlackStatusPayload.class))).thenReturn(new ResponseEntity<>(slackStatusUpdateResponse, HttpStatus.OK));
+        CachedUser cachedUser = createCachedUser();
+        cachedUser.setEmojis(List.of("parrot"));
+
+        slackClient.updateAndPersistStatus(cachedUser, createCurrentTrack("track123", "The Glowing Man"));
+        verify(emojiCatalog).reject("teamId", "parrot");
+        verify(userWriteBehindQueue).update(eq(TEST_USER_ID), any());
+        assertEquals(List.of(), cachedUser.getEmojis());
+        assertNull(cachedUser.getStatusTrackId());
+    }
+
+    private SpotifyCurrentItem createCurrentTrack(String trackId, String title) {
+        SpotifyCurrentItem currentItem = new SpotifyCurrentItem();
+        currentItem.setTrackId(trackId);
+        currentItem.setIsPlaying(true);
+        currentItem.setType("track");
+        currentItem.setTitle(title);
+        currentItem.setArtists(List.of("Swans"));
+        currentItem.setDurationMs(300000L);
+        currentItem.setProgressMs(1000L);
+        return currentItem;
+    }
+
     private CachedUser createCachedUser() {
         return CachedUser.builder()
                          .id(TEST_USER_ID)
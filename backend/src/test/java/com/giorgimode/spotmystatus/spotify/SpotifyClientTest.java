@@ -0,0 +1,218 @@
+package com.giorgimode.spotmystatus.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import com.giorgimode.spotmystatus.TestUtils;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import com.giorgimode.spotmystatus.model.SpotifyDevice;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent;
+import com.giorgimode.spotmystatus.model.UserReleasedEvent.Reason;
+import com.giorgimode.spotmystatus.persistence.TeamIndex;
+import com.giorgimode.spotmystatus.persistence.UserRepository;
+import com.giorgimode.spotmystatus.persistence.UserWriteBehindQueue;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.verification.VerificationMode;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class SpotifyClientTest {
+
+    private static final String PLAYER_URI = "https://fake-api.spotify.com/v1/me/player?additional_types=track,episode";
+    private static final String CURRENTLY_PLAYING_URI =
+        "https://fake-api.spotify.com/v1/me/player/currently-playing?additional_types=track,episode";
+
+    @Mock
+    private SpotifyAuthClient spotifyAuthClient;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserWriteBehindQueue userWriteBehindQueue;
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    @Mock
+    private LoadingCache<String, CachedUser> userCache;
+
+    @Mock
+    private ExecutorService executor;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private SpotifyClient spotifyClient;
+
+    @BeforeEach
+    void setUp() {
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setSpotifyApiUri("https://fake-api.spotify.com");
+        spotMyStatusProperties.setDeviceInventoryTtl(600000L);
+        spotMyStatusProperties.setPlayerStateTtl(10000L);
+        spotMyStatusProperties.setTrackMetadataCacheSize(100L);
+        spotifyClient = new SpotifyClient(spotifyAuthClient, userRepository, userWriteBehindQueue, new TeamIndex(),
+            new SpotifyDeviceInventory(spotMyStatusProperties, executor), new TrackMetadataCache(spotMyStatusProperties), restTemplate,
+            userCache, spotMyStatusProperties, eventPublisher);
+    }
+
+    @Test
+    void shouldSkipParsingWhenNothingIsPlaying() {
+        mockResponse(CURRENTLY_PLAYING_URI, new ResponseEntity<>(HttpStatus.NO_CONTENT));
+
+        assertTrue(spotifyClient.getCurrentLiveTrack(createCachedUser("")).isEmpty());
+        verifyCalls(PLAYER_URI, never());
+    }
+
+    @Test
+    void shouldReuseFreshPlayerState() {
+        CachedUser cachedUser = createCachedUser("");
+        mockResponse(CURRENTLY_PLAYING_URI, new ResponseEntity<>(createCurrentItem(null), HttpStatus.OK));
+        mockResponse(PLAYER_URI, new ResponseEntity<>(createCurrentItem(createDevice(false)), HttpStatus.OK));
+
+        Optional<SpotifyCurrentItem> firstTrack = spotifyClient.getCurrentLiveTrack(cachedUser);
+        Optional<SpotifyCurrentItem> secondTrack = spotifyClient.getCurrentLiveTrack(cachedUser);
+
+        assertTrue(firstTrack.isPresent());
+        assertTrue(secondTrack.isPresent());
+        assertEquals("track123", cachedUser.getPlayerStateKey());
+        assertFalse(cachedUser.isPrivateSession());
+        verifyCalls(PLAYER_URI, times(1));
+        verifyCalls(CURRENTLY_PLAYING_URI, times(2));
+    }
+
+    @Test
+    void shouldSkipPrivateSession() {
+        CachedUser cachedUser = createCachedUser("");
+        mockResponse(CURRENTLY_PLAYING_URI, new ResponseEntity<>(createCurrentItem(null), HttpStatus.OK));
+        mockResponse(PLAYER_URI, new ResponseEntity<>(createCurrentItem(createDevice(true)), HttpStatus.OK));
+
+        assertTrue(spotifyClient.getCurrentLiveTrack(cachedUser).isEmpty());
+        assertTrue(spotifyClient.getCurrentLiveTrack(cachedUser).isEmpty());
+        assertEquals("track123", cachedUser.getPlayerStateKey());
+        assertTrue(cachedUser.isPrivateSession());
+        verifyCalls(PLAYER_URI, times(1));
+        verifyCalls(CURRENTLY_PLAYING_URI, times(2));
+    }
+
+    @Test
+    void shouldRecheckPrivateSessionOnTrackChange() {
+        CachedUser cachedUser = createCachedUser("");
+        SpotifyCurrentItem nextTrack = createCurrentItem(null);
+        nextTrack.setTrackId("track456");
+        when(restTemplate.exchange(eq(CURRENTLY_PLAYING_URI), eq(HttpMethod.GET), any(HttpEntity.class), eq(SpotifyCurrentItem.class)))
+            .thenReturn(new ResponseEntity<>(createCurrentItem(null), HttpStatus.OK), new ResponseEntity<>(nextTrack, HttpStatus.OK));
+        mockResponse(PLAYER_URI, new ResponseEntity<>(createCurrentItem(createDevice(true)), HttpStatus.OK));
+
+        assertTrue(spotifyClient.getCurrentLiveTrack(cachedUser).isEmpty());
+        assertTrue(spotifyClient.getCurrentLiveTrack(cachedUser).isEmpty());
+        verifyCalls(PLAYER_URI, times(2));
+    }
+
+    @Test
+    void shouldRecheckOutdatedPlayerState() {
+        CachedUser cachedUser = createCachedUser("");
+        mockResponse(CURRENTLY_PLAYING_URI, new ResponseEntity<>(createCurrentItem(null), HttpStatus.OK));
+        when(restTemplate.exchange(eq(PLAYER_URI), eq(HttpMethod.GET), any(HttpEntity.class), eq(SpotifyCurrentItem.class)))
+            .thenReturn(new ResponseEntity<>(createCurrentItem(createDevice(false)), HttpStatus.OK),
+                new ResponseEntity<>(createCurrentItem(createDevice(true)), HttpStatus.OK));
+
+        assertTrue(spotifyClient.getCurrentLiveTrack(cachedUser).isPresent());
+        // the user switches to a private session in the middle of the track
+        cachedUser.setPlayerStateCheckedAt(System.currentTimeMillis() - 10000L);
+        assertTrue(spotifyClient.getCurrentLiveTrack(cachedUser).isEmpty());
+        verifyCalls(PLAYER_URI, times(2));
+    }
+
+    @Test
+    void shouldReuseFreshPlayerStateOfLocalFile() {
+        CachedUser cachedUser = createCachedUser("");
+        SpotifyCurrentItem localFile = createCurrentItem(null);
+        localFile.setTrackId(null);
+        SpotifyCurrentItem localFilePlayerState = createCurrentItem(createDevice(false));
+        localFilePlayerState.setTrackId(null);
+        mockResponse(CURRENTLY_PLAYING_URI, new ResponseEntity<>(localFile, HttpStatus.OK));
+        mockResponse(PLAYER_URI, new ResponseEntity<>(localFilePlayerState, HttpStatus.OK));
+
+        assertTrue(spotifyClient.getCurrentLiveTrack(cachedUser).isPresent());
+        assertTrue(spotifyClient.getCurrentLiveTrack(cachedUser).isPresent());
+        assertEquals("local:The Glowing Man", cachedUser.getPlayerStateKey());
+        verifyCalls(PLAYER_URI, times(1));
+        verifyCalls(CURRENTLY_PLAYING_URI, times(2));
+    }
+
+    @Test
+    void shouldAlwaysFetchPlayerStateWithDeviceFilter() {
+        mockResponse(PLAYER_URI, new ResponseEntity<>(createCurrentItem(createDevice(false)), HttpStatus.OK));
+
+        assertTrue(spotifyClient.getCurrentLiveTrack(createCachedUser("macbook123")).isPresent());
+        verifyCalls(CURRENTLY_PLAYING_URI, never());
+    }
+
+    @Test
+    void shouldReleaseInvalidatedUser() {
+        when(userCache.getIfPresent("user123")).thenReturn(TestUtils.createCachedUser());
+
+        spotifyClient.invalidateUser("user123");
+
+        verify(userCache).invalidate("user123");
+        verify(userRepository).deleteById("user123");
+        verify(eventPublisher).publishEvent(argThat((UserReleasedEvent event) ->
+            "user123".equals(event.getUserId()) && "team123".equals(event.getTeamId()) && event.getReason() == Reason.INVALIDATED));
+    }
+
+    private void mockResponse(String uri, ResponseEntity<SpotifyCurrentItem> response) {
+        when(restTemplate.exchange(eq(uri), eq(HttpMethod.GET), any(HttpEntity.class), eq(SpotifyCurrentItem.class))).thenReturn(response);
+    }
+
+    private void verifyCalls(String uri, VerificationMode mode) {
+        verify(restTemplate, mode).exchange(eq(uri), eq(HttpMethod.GET), any(HttpEntity.class), eq(SpotifyCurrentItem.class));
+    }
+
+    private SpotifyCurrentItem createCurrentItem(SpotifyDevice device) {
+        SpotifyCurrentItem currentItem = new SpotifyCurrentItem();
+        currentItem.setIsPlaying(true);
+        currentItem.setType("track");
+        currentItem.setTrackId("track123");
+        currentItem.setTitle("The Glowing Man");
+        currentItem.setArtists(List.of("Swans"));
+        currentItem.setDevice(device);
+        return currentItem;
+    }
+
+    private SpotifyDevice createDevice(boolean privateSession) {
+        SpotifyDevice device = new SpotifyDevice();
+        device.setId("macbook123");
+        device.setPrivateSession(privateSession);
+        return device;
+    }
+
+    private CachedUser createCachedUser(String spotifyDeviceIds) {
+        return TestUtils.cachedUserBuilder()
+                        .spotifyDeviceIds(spotifyDeviceIds)
+                        .build();
+    }
+}
@@ -0,0 +1,140 @@
+package com.giorgimode.spotmystatus.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import com.giorgimode.spotmystatus.TestUtils;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.CachedUser;
+import com.giorgimode.spotmystatus.model.SpotifyDevice;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class SpotifyDeviceInventoryTest {
+
+    private static final String TEST_USER_ID = "user123";
+
+    private final List<Runnable> backgroundTasks = new ArrayList<>();
+    private final CachedUser cachedUser = TestUtils.createCachedUser();
+
+    @Test
+    void shouldLoadDevicesOnlyOnceWithinTtl() {
+        SpotifyDeviceInventory inventory = createInventory(600000L);
+        AtomicInteger loadCount = new AtomicInteger();
+        Function<CachedUser, List<SpotifyDevice>> loader = user -> {
+            loadCount.incrementAndGet();
+            return List.of(createDevice("macbook123", "MacBook"));
+        };
+
+        assertEquals(1, inventory.getDevices(cachedUser, loader).size());
+        assertEquals(1, inventory.getDevices(cachedUser, loader).size());
+        assertEquals(1, loadCount.get());
+        assertTrue(backgroundTasks.isEmpty());
+    }
+
+    @Test
+    void shouldServeStaleDevicesWhileRefreshingInBackground() {
+        SpotifyDeviceInventory inventory = createInventory(-1L);
+        inventory.getDevices(cachedUser, user -> List.of(createDevice("macbook123", "MacBook")));
+
+        List<SpotifyDevice> devices = inventory.getDevices(cachedUser, user -> List.of(createDevice("echo123", "Echo Dot")));
+        assertEquals("macbook123", devices.get(0).getId());
+        assertEquals(1, backgroundTasks.size());
+
+        backgroundTasks.forEach(Runnable::run);
+        assertEquals("echo123", inventory.getDevices(cachedUser, user -> List.of()).get(0).getId());
+    }
+
+    @Test
+    void shouldAbsorbDevicesFromPlayback() {
+        SpotifyDeviceInventory inventory = createInventory(600000L);
+        inventory.getDevices(cachedUser, user -> List.of(createDevice("macbook123", "MacBook")));
+
+        inventory.absorb(TEST_USER_ID, createDevice("echo123", "Echo Dot"));
+        inventory.absorb(TEST_USER_ID, createDevice("macbook123", "Work MacBook"));
+
+        List<SpotifyDevice> devices = inventory.getDevices(cachedUser, user -> List.of());
+        assertEquals(2, devices.size());
+        assertTrue(devices.contains(createDevice("echo123", "Echo Dot")));
+        assertTrue(devices.contains(createDevice("macbook123", "Work MacBook")));
+    }
+
+    @Test
+    void shouldKeepDevicesAbsorbedDuringRefresh() {
+        SpotifyDeviceInventory inventory = createInventory(-1L);
+        inventory.getDevices(cachedUser, user -> List.of(createDevice("macbook123", "MacBook")));
+        inventory.getDevices(cachedUser, user -> {
+            inventory.absorb(TEST_USER_ID, createDevice("echo123", "Echo Dot"));
+            return List.of(createDevice("macbook123", "MacBook"));
+        });
+
+        backgroundTasks.forEach(Runnable::run);
+
+        List<SpotifyDevice> devices = inventory.getDevices(cachedUser, user -> List.of());
+        assertEquals(2, devices.size());
+        assertTrue(devices.contains(createDevice("echo123", "Echo Dot")));
+    }
+
+    @Test
+    void shouldShareConcurrentInitialLoad() throws Exception {
+        SpotifyDeviceInventory inventory = createInventory(600000L);
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        Function<CachedUser, List<SpotifyDevice>> loader = user -> {
+            loadCount.incrementAndGet();
+            loadStarted.countDown();
+            await(loadReleased);
+            return List.of(createDevice("macbook123", "MacBook"));
+        };
+        CompletableFuture<List<SpotifyDevice>> firstRequest =
+            CompletableFuture.supplyAsync(() -> inventory.getDevices(cachedUser, loader));
+        await(loadStarted);
+        CompletableFuture<List<SpotifyDevice>> secondRequest =
+            CompletableFuture.supplyAsync(() -> inventory.getDevices(cachedUser, loader));
+        loadReleased.countDown();
+
+        assertEquals(1, firstRequest.get(5, TimeUnit.SECONDS).size());
+        assertEquals(1, secondRequest.get(5, TimeUnit.SECONDS).size());
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    void shouldRetryFailedInitialLoad() {
+        SpotifyDeviceInventory inventory = createInventory(600000L);
+        assertTrue(inventory.getDevices(cachedUser, user -> null).isEmpty());
+        assertEquals(1, inventory.getDevices(cachedUser, user -> List.of(createDevice("macbook123", "MacBook"))).size());
+    }
+
+    private SpotifyDeviceInventory createInventory(long ttl) {
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setDeviceInventoryTtl(ttl);
+        ExecutorService executor = mock(ExecutorService.class);
+        doAnswer(invocation -> backgroundTasks.add(invocation.getArgument(0))).when(executor).execute(any(Runnable.class));
+        return new SpotifyDeviceInventory(spotMyStatusProperties, executor);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private SpotifyDevice createDevice(String id, String name) {
+        SpotifyDevice device = new SpotifyDevice();
+        device.setId(id);
+        device.setName(name);
+        return device;
+    }
+}
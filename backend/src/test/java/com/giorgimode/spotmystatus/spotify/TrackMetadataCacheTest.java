@@ -0,0 +1,71 @@
+package com.giorgimode.spotmystatus.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.giorgimode.spotmystatus.helpers.SpotMyStatusProperties;
+import com.giorgimode.spotmystatus.model.SpotifyCurrentItem;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TrackMetadataCacheTest {
+
+    private TrackMetadataCache trackMetadataCache;
+
+    @BeforeEach
+    void setUp() {
+        SpotMyStatusProperties spotMyStatusProperties = new SpotMyStatusProperties();
+        spotMyStatusProperties.setTrackMetadataCacheSize(100L);
+        trackMetadataCache = new TrackMetadataCache(spotMyStatusProperties);
+    }
+
+    @Test
+    void shouldShareMetadataOfSameTrack() {
+        SpotifyCurrentItem firstItem = trackMetadataCache.applySharedMetadata(createCurrentItem("track123", "Swans"));
+        SpotifyCurrentItem secondItem = trackMetadataCache.applySharedMetadata(createCurrentItem("track123", "Swans"));
+
+        assertSame(firstItem.getArtists(), secondItem.getArtists());
+        assertSame(firstItem.getTitle(), secondItem.getTitle());
+        assertSame(firstItem.generateFullTitle(100), secondItem.generateFullTitle(100));
+        assertSame(firstItem.generateFullTitle(150), secondItem.generateFullTitle(150));
+        assertEquals("Swans - The Glowing Man", firstItem.generateFullTitle(100));
+    }
+
+    @Test
+    void shouldNotShareMetadataOfLocalFiles() {
+        SpotifyCurrentItem firstItem = trackMetadataCache.applySharedMetadata(createCurrentItem(null, "Swans"));
+        SpotifyCurrentItem secondItem = trackMetadataCache.applySharedMetadata(createCurrentItem(null, "Swans"));
+
+        assertNotSame(firstItem.generateFullTitle(100), secondItem.generateFullTitle(100));
+        assertEquals(firstItem.generateFullTitle(100), secondItem.generateFullTitle(100));
+    }
+
+    @Test
+    void shouldTruncateTitlesToTheirLength() {
+        String longArtist = "A".repeat(120);
+        SpotifyCurrentItem currentItem = trackMetadataCache.applySharedMetadata(createCurrentItem("track123", longArtist));
+
+        assertEquals(100, currentItem.generateFullTitle(100).length());
+        assertEquals(longArtist + " - The Glowing Man", currentItem.generateFullTitle(150));
+        assertTrue(currentItem.generateFullTitle(50).endsWith("..."));
+    }
+
+    @Test
+    void shouldBuildTitleWithoutArtists() {
+        SpotifyCurrentItem currentItem = createCurrentItem(null, "Swans");
+        currentItem.setArtists(List.of());
+
+        assertEquals("The Glowing Man", trackMetadataCache.applySharedMetadata(currentItem).generateFullTitle(100));
+    }
+
+    private SpotifyCurrentItem createCurrentItem(String trackId, String artist) {
+        SpotifyCurrentItem currentItem = new SpotifyCurrentItem();
+        currentItem.setTrackId(trackId);
+        currentItem.setType("track");
+        currentItem.setTitle(new String("The Glowing Man"));
+        currentItem.setArtists(List.of(artist));
+        return currentItem;
+    }
+}